@@ -0,0 +1,54 @@
+package com.marin.UserService.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of hashing and verifying passwords with BCrypt at several costs.
+ * Every extra point of cost doubles the time, so this shows the price of raising auth.bcrypt.strength.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2 , time = 2)
+@Measurement(iterations = 3 , time = 3)
+@Fork(1)
+public class BCryptBenchmark {
+
+    private static final String PASSWORD = "benchmark-password";
+
+    @Param({"4" , "8" , "10" , "12"})
+    public int cost;
+
+    private BCryptPasswordEncoder encoder;
+
+    private String hash;
+
+    @Setup
+    public void setup(){
+        encoder = new BCryptPasswordEncoder(cost);
+        hash = encoder.encode(PASSWORD);
+    }
+
+    @Benchmark
+    public String encode(){
+        return encoder.encode(PASSWORD);
+    }
+
+    @Benchmark
+    public boolean matches(){
+        return encoder.matches(PASSWORD , hash);
+    }
+}
@@ -0,0 +1,87 @@
+package com.marin.UserService.benchmark;
+
+import com.marin.UserService.security.AuthenticatedUser;
+import com.marin.UserService.security.JwtUtil;
+import com.marin.UserService.security.SigningKeyStore;
+import com.marin.UserService.security.VerifiedToken;
+import com.marin.UserService.security.VerifiedTokenCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the creation and verification of the JWT tokens.
+ *
+ * The uncached verification uses a token cache with no room for entries, so it measures parsing and checking the
+ * signature of the token on every call.
+ *
+ * The signing keys are kept in an in-memory H2 database created with the schema of the API.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3 , time = 2)
+@Measurement(iterations = 5 , time = 2)
+@Fork(1)
+public class JwtBenchmark {
+
+    private static final String SECRET = "benchmark-secret-key-that-is-long-enough-for-hs256";
+
+    private JwtUtil cachedJwtUtil;
+
+    private JwtUtil uncachedJwtUtil;
+
+    private AuthenticatedUser user;
+
+    private String token;
+
+    @Setup
+    public void setup(){
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:jmh;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+
+        SigningKeyStore keyStore = new SigningKeyStore(new JdbcTemplate(dataSource) , SECRET , 24 , 15);
+        keyStore.afterSingletonsInstantiated();
+
+        cachedJwtUtil = new JwtUtil(SECRET , true , keyStore , new VerifiedTokenCache(10000 , 8388608 , registry) , registry);
+        uncachedJwtUtil = new JwtUtil(SECRET , true , keyStore , new VerifiedTokenCache(1 , 0 , registry) , registry);
+
+        user = new AuthenticatedUser(42 , "benchmark" , "" , List.of(new SimpleGrantedAuthority("ROLE_CLIENT")));
+        token = cachedJwtUtil.generateToken(user , 0);
+    }
+
+    @Benchmark
+    public String generateToken(){
+        return cachedJwtUtil.generateToken(user , 0);
+    }
+
+    @Benchmark
+    public boolean verifyCachedToken(){
+        VerifiedToken verified = cachedJwtUtil.verifyToken(token);
+        return cachedJwtUtil.validateToken(verified , user);
+    }
+
+    @Benchmark
+    public boolean verifyUncachedToken(){
+        VerifiedToken verified = uncachedJwtUtil.verifyToken(token);
+        return uncachedJwtUtil.validateToken(verified , user);
+    }
+}
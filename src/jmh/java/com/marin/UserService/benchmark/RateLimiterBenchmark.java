@@ -0,0 +1,91 @@
+package com.marin.UserService.benchmark;
+
+import com.marin.UserService.security.VerifiedToken;
+import com.marin.UserService.service.EndpointGroup;
+import com.marin.UserService.service.LocalRateLimitBackend;
+import com.marin.UserService.service.RateLimitProbe;
+import com.marin.UserService.service.RateLimiterService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Benchmarks of resolving and consuming the buckets of the rate limiter under contention.
+ *
+ * Every benchmark runs on 8 threads, either hitting the same bucket (one user sending requests from many threads)
+ * or a bucket per thread (many users).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3 , time = 2)
+@Measurement(iterations = 5 , time = 2)
+@Threads(8)
+@Fork(1)
+public class RateLimiterBenchmark {
+
+    private RateLimiterService rateLimiterService;
+
+    private VerifiedToken sharedToken;
+
+    @Setup
+    public void setup(){
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        rateLimiterService = new RateLimiterService(new LocalRateLimitBackend(100000 , 300 , registry) , registry);
+        sharedToken = tokenOf(1);
+    }
+
+    /**
+     * Token and address of a single benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class Client {
+
+        private static final AtomicInteger ids = new AtomicInteger(1000);
+
+        private VerifiedToken token;
+
+        private String address;
+
+        @Setup
+        public void setup(){
+            int id = ids.incrementAndGet();
+
+            token = tokenOf(id);
+            address = "10.0." + (id >> 8 & 0xFF) + "." + (id & 0xFF);
+        }
+    }
+
+    @Benchmark
+    public RateLimitProbe sharedUserBucket(){
+        return rateLimiterService.tryConsume(EndpointGroup.USERS , "10.0.0.1" , sharedToken);
+    }
+
+    @Benchmark
+    public RateLimitProbe userBucketPerThread(Client client){
+        return rateLimiterService.tryConsume(EndpointGroup.USERS , client.address , client.token);
+    }
+
+    @Benchmark
+    public RateLimitProbe addressBucketPerThread(Client client){
+        return rateLimiterService.tryConsume(EndpointGroup.AUTH , client.address , null);
+    }
+
+    private static VerifiedToken tokenOf(int id){
+        return new VerifiedToken("user" + id , id , List.of("ROLE_CLIENT") , 0 , Instant.now().plusSeconds(86400));
+    }
+}
@@ -0,0 +1,104 @@
+package com.marin.UserService.benchmark;
+
+import com.marin.UserService.datasource.ReadYourWritesTracker;
+import com.marin.UserService.entities.Role;
+import com.marin.UserService.repository.RoleRepository;
+import com.marin.UserService.repository.UserCredentialsView;
+import com.marin.UserService.repository.UserRepository;
+import com.marin.UserService.service.CustomUserDetailsService;
+import com.marin.UserService.service.RoleServiceImp;
+import com.marin.UserService.service.UserDetailsCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Benchmarks of loading the User Details of a user, including mapping its roles to authorities.
+ *
+ * The repositories are mocked so only the mapping and the caching are measured, not the database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3 , time = 2)
+@Measurement(iterations = 5 , time = 2)
+@Fork(1)
+public class UserDetailsBenchmark {
+
+    private static final String USERNAME = "benchmark";
+
+    private CustomUserDetailsService userDetailsService;
+
+    private UserDetailsCache userDetailsCache;
+
+    @Setup
+    public void setup(){
+        RoleRepository roleRepository = mock(RoleRepository.class);
+        when(roleRepository.findAll()).thenReturn(List.of(new Role(1 , "ADMIN") , new Role(2 , "CLIENT")));
+
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findCredentialsByUsername(USERNAME)).thenReturn(List.of(
+                new Row(42 , USERNAME , "{bcrypt}hash" , "CLIENT") ,
+                new Row(42 , USERNAME , "{bcrypt}hash" , "ADMIN")));
+
+        userDetailsCache = new UserDetailsCache(10000 , 300 , new SimpleMeterRegistry());
+
+        RoleServiceImp roleService = new RoleServiceImp(roleRepository , userDetailsCache , mock(PlatformTransactionManager.class));
+        roleService.loadRoles();
+
+        userDetailsService = new CustomUserDetailsService(userRepository , userDetailsCache , roleService , new ReadYourWritesTracker("" , 5000));
+    }
+
+    @Benchmark
+    public UserDetails loadCachedUser(){
+        return userDetailsService.loadUserByUsername(USERNAME);
+    }
+
+    @Benchmark
+    public UserDetails loadUncachedUser(){
+        userDetailsCache.evict(USERNAME);
+        return userDetailsService.loadUserByUsername(USERNAME);
+    }
+
+    /**
+     * Row of the credentials query, a plain implementation so the mock is not measured on every getter.
+     */
+    private record Row(int id , String username , String password , String roleName) implements UserCredentialsView {
+
+        @Override
+        public int getId(){
+            return id;
+        }
+
+        @Override
+        public String getUsername(){
+            return username;
+        }
+
+        @Override
+        public String getPassword(){
+            return password;
+        }
+
+        @Override
+        public String getRoleName(){
+            return roleName;
+        }
+    }
+}
@@ -2,8 +2,9 @@ package com.marin.UserService.config;
 
 import com.marin.UserService.entities.Role;
 import com.marin.UserService.entities.User;
-import com.marin.UserService.repository.RoleRepository;
 import com.marin.UserService.repository.UserRepository;
+import com.marin.UserService.service.RoleService;
+import com.marin.UserService.service.UserVersions;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
@@ -22,17 +23,20 @@ public class AdminSetup implements CommandLineRunner {
 
     private final PasswordEncoder passwordEncoder;
 
-    private final RoleRepository roleRepository;
+    private final RoleService roleService;
+
+    private final UserVersions userVersions;
 
     private final String adminUser;
 
     private final String adminPass;
 
     @Autowired
-    public AdminSetup(UserRepository userRepository, PasswordEncoder passwordEncoder, RoleRepository roleRepository, @Value("${auth.admin.username}") String adminUser ,@Value("${auth.admin.password}") String adminPass) {
+    public AdminSetup(UserRepository userRepository, PasswordEncoder passwordEncoder, RoleService roleService, UserVersions userVersions, @Value("${auth.admin.username}") String adminUser ,@Value("${auth.admin.password}") String adminPass) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
-        this.roleRepository = roleRepository;
+        this.roleService = roleService;
+        this.userVersions = userVersions;
         this.adminUser = adminUser;
         this.adminPass = adminPass;
     }
@@ -41,16 +45,17 @@ public class AdminSetup implements CommandLineRunner {
     public void run(String... args) throws Exception {
 
         // Check if the Admin user already exists.
-        if (userRepository.findByUsername(adminUser).isEmpty()) {
+        if (!userRepository.existsByUsername(adminUser)) {
             User admin = new User();
             admin.setUsername(adminUser);
             admin.setPassword(passwordEncoder.encode(adminPass)); // Hash password
 
-            Role role = roleRepository.findByName("ADMIN").orElseThrow();
+            Role role = roleService.findRole("ADMIN");
 
             admin.getRoles().add(role);
 
             userRepository.save(admin);
+            userVersions.userChanged(adminUser);
         }
     }
 }
@@ -0,0 +1,75 @@
+package com.marin.UserService.config;
+
+import com.marin.UserService.datasource.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Routes the read-only transactions to a pool of read replicas when 'datasource.replica.urls' is set.
+ *
+ * The primary is configured with the usual 'spring.datasource' properties, the replicas share its driver and, unless
+ * 'datasource.replica.username' and 'datasource.replica.password' are set, its credentials.
+ * Open-in-view is turned off by the ReplicaEnvironmentPostProcessor, see why there.
+ */
+@Configuration
+@ConditionalOnProperty(name = "datasource.replica.urls")
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties){
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource routingDataSource(HikariDataSource primaryDataSource ,
+                                                      DataSourceProperties properties ,
+                                                      @Value("${datasource.replica.urls}") List<String> urls ,
+                                                      @Value("${datasource.replica.username:}") String username ,
+                                                      @Value("${datasource.replica.password:}") String password ,
+                                                      @Value("${datasource.replica.maximum-pool-size:10}") int maximumPoolSize){
+        List<HikariDataSource> replicas = new ArrayList<>(urls.size());
+
+        for(String url : urls){
+            HikariDataSource replica = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .driverClassName(properties.determineDriverClassName())
+                    .url(url.trim())
+                    .username(username.isEmpty() ? properties.determineUsername() : username)
+                    .password(username.isEmpty() ? properties.determinePassword() : password)
+                    .build();
+
+            replica.setPoolName("replica-" + replicas.size());
+            replica.setMaximumPoolSize(maximumPoolSize);
+            replica.setReadOnly(true);
+            replicas.add(replica);
+        }
+
+        return new ReplicaRoutingDataSource(primaryDataSource , replicas);
+    }
+
+    /**
+     * DataSource used by JPA and JDBC, the connection is only taken on the first statement so the routing already
+     * knows whether the transaction is read-only.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource routingDataSource){
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+}
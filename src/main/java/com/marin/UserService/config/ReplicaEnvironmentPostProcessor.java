@@ -0,0 +1,33 @@
+package com.marin.UserService.config;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.Map;
+
+/**
+ * Turns off 'spring.jpa.open-in-view' when read replicas are configured ('datasource.replica.urls').
+ *
+ * With open-in-view the Hibernate session of a request keeps the connection taken by its first statement, so after a
+ * read-only query every later write of the request (e.g. the password rehash of the login) would run on the replica.
+ * Without it every transaction takes its own connection and is routed on its own.
+ *
+ * It runs after the config data (including the config server) is loaded and takes precedence over it.
+ */
+public class ReplicaEnvironmentPostProcessor implements EnvironmentPostProcessor {
+
+    private static final String PROPERTY_SOURCE = "replicaDataSourceDefaults";
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment , SpringApplication application){
+        String replicaUrls = environment.getProperty("datasource.replica.urls" , "");
+
+        if(replicaUrls.isBlank()){
+            return;
+        }
+
+        environment.getPropertySources().addFirst(new MapPropertySource(PROPERTY_SOURCE , Map.of("spring.jpa.open-in-view" , "false")));
+    }
+}
@@ -1,9 +1,16 @@
 package com.marin.UserService.config;
 
+import com.marin.UserService.security.BoundedPasswordEncoder;
+import com.marin.UserService.security.CalibratedBCryptPasswordEncoder;
 import com.marin.UserService.security.JwtAuthenticationFilter;
 import com.marin.UserService.security.JwtUtil;
+import com.marin.UserService.security.TokenEpochRegistry;
 import com.marin.UserService.service.CustomUserDetailsService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.access.hierarchicalroles.RoleHierarchy;
@@ -14,11 +21,11 @@ import org.springframework.security.config.annotation.method.configuration.Enabl
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
+import java.time.Duration;
+
 /**
  *  Manages the security of the API establishing rules for resource access and provides required functionality for security within the app.
  */
@@ -27,12 +34,23 @@ import org.springframework.security.web.authentication.UsernamePasswordAuthentic
 @EnableMethodSecurity
 public class SecurityConfig {
 
+    private static final Logger log = LoggerFactory.getLogger(SecurityConfig.class);
+
     @Autowired
     private JwtUtil jwtUtil;
 
     @Autowired
     private CustomUserDetailsService userDetailsService;
 
+    @Autowired
+    private TokenEpochRegistry epochRegistry;
+
+    /**
+     * Determines whether authenticated requests are resolved only using the claims of their token without querying the database.
+     */
+    @Value("${jwt.stateless:false}")
+    private boolean statelessAuthentication;
+
     /**
      * Establishes the security chain for the API requests.
      */
@@ -42,24 +60,45 @@ public class SecurityConfig {
                 .csrf(csrf -> csrf.disable())
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers("/auth/**").permitAll()
+                        .requestMatchers("/.well-known/jwks.json").permitAll()
                         .requestMatchers("/swagger-ui/**").permitAll()
                         .requestMatchers("/v3/api-docs/**").permitAll()
                         .anyRequest().authenticated()
 
                 )
                 .sessionManagement(sess -> sess.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
-                .addFilterBefore(new JwtAuthenticationFilter(jwtUtil , userDetailsService) , UsernamePasswordAuthenticationFilter.class)
+                .addFilterBefore(new JwtAuthenticationFilter(jwtUtil , userDetailsService , epochRegistry , statelessAuthentication) , UsernamePasswordAuthenticationFilter.class)
                 .build();
     }
 
     /**
      * Returns a password encoder to be used to encode all user's passwords sent by the clients.
+     * Passwords are hashed with BCrypt in a pool of their own, sized by 'auth.hashing.threads' (defaults to the number of processors)
+     * with a queue of 'auth.hashing.queue-capacity' operations. Bulk imports use 'auth.hashing.bulk-threads' threads of their
+     * own (defaults to a quarter of the hashing threads).
+     *
+     * The BCrypt cost is taken from 'auth.bcrypt.strength', if it's not set it is calibrated at startup to the highest cost
+     * whose hashing time doesn't exceed 'auth.bcrypt.target-millis', never lower than 'auth.bcrypt.min-strength'.
+     * Stored hashes with a lower cost are rehashed on the next successful login.
      *
      * @return The current password encoder to use in this app
      */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public BoundedPasswordEncoder passwordEncoder(MeterRegistry meterRegistry ,
+                                           @Value("${auth.hashing.threads:0}") int threads ,
+                                           @Value("${auth.hashing.queue-capacity:64}") int queueCapacity ,
+                                           @Value("${auth.hashing.bulk-threads:0}") int bulkThreads ,
+                                           @Value("${auth.bcrypt.strength:0}") int strength ,
+                                           @Value("${auth.bcrypt.min-strength:10}") int minStrength ,
+                                           @Value("${auth.bcrypt.max-strength:16}") int maxStrength ,
+                                           @Value("${auth.bcrypt.target-millis:250}") long targetMillis) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        int bulkPoolSize = bulkThreads > 0 ? bulkThreads : Math.max(1 , poolSize / 4);
+        int cost = strength > 0 ? strength : CalibratedBCryptPasswordEncoder.calibrate(Duration.ofMillis(targetMillis) , minStrength , maxStrength);
+
+        log.info("Using BCrypt with cost {}" , cost);
+
+        return new BoundedPasswordEncoder(new CalibratedBCryptPasswordEncoder(cost) , poolSize , queueCapacity , bulkPoolSize , meterRegistry);
     }
 
     /**
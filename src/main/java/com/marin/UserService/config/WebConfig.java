@@ -2,28 +2,36 @@ package com.marin.UserService.config;
 
 import com.marin.UserService.interceptor.RateLimitInterceptor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 /**
- * Establishes the configuration of interceptors to be used for rate limiting of request for non-authenticated users
- * in the /auth endpoints
+ * Establishes the configuration of interceptors to be used for rate limiting of requests, non-authenticated users
+ * are limited in the /auth endpoints and authenticated users in the /users endpoints.
  */
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
 
     private final RateLimitInterceptor rateLimitInterceptor;
 
+    /**
+     * Determines whether requests are rate limited, it should only be disabled for benchmarks and load tests.
+     */
+    private final boolean rateLimitEnabled;
+
     @Autowired
-    public WebConfig(RateLimitInterceptor limitInterceptor){
+    public WebConfig(RateLimitInterceptor limitInterceptor , @Value("${rate-limit.enabled:true}") boolean rateLimitEnabled){
         this.rateLimitInterceptor = limitInterceptor;
+        this.rateLimitEnabled = rateLimitEnabled;
     }
 
     @Override
     public void addInterceptors(InterceptorRegistry registry){
-        registry.addInterceptor(rateLimitInterceptor)
-                .addPathPatterns("/auth/**")
-                .excludePathPatterns("/users/**");
+        if(rateLimitEnabled){
+            registry.addInterceptor(rateLimitInterceptor)
+                    .addPathPatterns("/auth/**" , "/users/**");
+        }
     }
 }
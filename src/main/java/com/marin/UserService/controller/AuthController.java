@@ -1,12 +1,15 @@
 package com.marin.UserService.controller;
 
-import com.marin.UserService.dto.UserDataDTO;
 import com.marin.UserService.dto.UserRegistryDTO;
-import com.marin.UserService.entities.User;
-import com.marin.UserService.exception.NoUserFoundException;
+import com.marin.UserService.exception.HashingCapacityExceededException;
+import com.marin.UserService.exception.UsernameTakenException;
+import com.marin.UserService.security.AuthenticatedUser;
 import com.marin.UserService.security.JwtUtil;
-import com.marin.UserService.service.CustomUserDetailsService;
+import com.marin.UserService.security.TokenEpochRegistry;
+import com.marin.UserService.service.UsernameFilter;
 import com.marin.UserService.service.UserService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
@@ -16,8 +19,10 @@ import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -34,16 +39,39 @@ public class AuthController {
 
     private final AuthenticationManager authenticationManager;
 
-    private final CustomUserDetailsService userDetailsService;
-
     private final JwtUtil jwtUtil;
 
+    private final TokenEpochRegistry epochRegistry;
+
+    private final UsernameFilter usernameFilter;
+
+    /**
+     * Time spent on login attempts by outcome: success, failure (bad credentials) or busy (hashing pool saturated).
+     */
+    private final Timer successfulLogins;
+
+    private final Timer failedLogins;
+
+    private final Timer busyLogins;
+
     @Autowired
-    public AuthController(UserService userService, AuthenticationManager authenticationManager, CustomUserDetailsService userDetailsService, JwtUtil jwtUtil) {
+    public AuthController(UserService userService, AuthenticationManager authenticationManager, JwtUtil jwtUtil, TokenEpochRegistry epochRegistry, UsernameFilter usernameFilter, MeterRegistry meterRegistry) {
         this.userService = userService;
         this.authenticationManager = authenticationManager;
-        this.userDetailsService = userDetailsService;
         this.jwtUtil = jwtUtil;
+        this.epochRegistry = epochRegistry;
+        this.usernameFilter = usernameFilter;
+
+        this.successfulLogins = loginTimer("success" , meterRegistry);
+        this.failedLogins = loginTimer("failure" , meterRegistry);
+        this.busyLogins = loginTimer("busy" , meterRegistry);
+    }
+
+    private static Timer loginTimer(String outcome , MeterRegistry meterRegistry){
+        return Timer.builder("auth.login")
+                .description("Login attempts and the time spent on them")
+                .tag("outcome" , outcome)
+                .register(meterRegistry);
     }
 
     @PostMapping("/register")
@@ -51,14 +79,15 @@ public class AuthController {
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200" , description = "User registered successfully"),
             @ApiResponse(responseCode = "409" , description = "Username already taken"),
-            @ApiResponse(responseCode = "429" , description = "Too many registration attempts")
+            @ApiResponse(responseCode = "429" , description = "Too many registration attempts"),
+            @ApiResponse(responseCode = "503" , description = "The server is too busy to hash the password")
     })
     public ResponseEntity<String> registerUser(@Valid @RequestBody UserRegistryDTO userDTO){
 
         try{
             userService.registerUser(userDTO);
             return ResponseEntity.ok("User registered successfully");
-        }catch(DataIntegrityViolationException ex){
+        }catch(UsernameTakenException | DataIntegrityViolationException ex){
             return ResponseEntity.status(HttpStatus.CONFLICT).body("This username has already been taken");
         }
 
@@ -69,17 +98,45 @@ public class AuthController {
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200" , description = "Access granted with its JWT Token returned"),
             @ApiResponse(responseCode = "401" , description = "Bad credentials"),
-            @ApiResponse(responseCode = "429" , description = "Too many login attempts")
+            @ApiResponse(responseCode = "429" , description = "Too many login attempts"),
+            @ApiResponse(responseCode = "503" , description = "The server is too busy to verify the password")
     })
-    public ResponseEntity<String> login(@RequestBody UserRegistryDTO loginRequest) throws NoUserFoundException {
-        authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(
-                loginRequest.username(), loginRequest.password()));
+    public ResponseEntity<String> login(@RequestBody UserRegistryDTO loginRequest) {
+        Timer.Sample sample = Timer.start();
+        Authentication authentication;
+
+        // Unknown users are rejected before querying the database or hashing the password.
+        if(loginRequest.username() == null || !usernameFilter.mightExist(loginRequest.username())){
+            sample.stop(failedLogins);
+            throw new BadCredentialsException("Bad credentials");
+        }
 
-        UserDetails userDetails = userDetailsService.loadUserByUsername(loginRequest.username());
+        AuthenticatedUser user;
+        int epoch;
 
-        UserDataDTO user = userService.fetchUserByName(loginRequest.username());
+        try{
+            authentication = authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(
+                    loginRequest.username(), loginRequest.password()));
+
+            // The principal is loaded once by the authentication and already carries the id and roles of the user.
+            user = (AuthenticatedUser) authentication.getPrincipal();
+            epoch = epochRegistry.currentEpoch(user.getId());
+
+            // The credentials may come from the cache of this instance while the user was deleted through another one.
+            if(epoch == TokenEpochRegistry.DELETED_EPOCH){
+                throw new BadCredentialsException("Bad credentials");
+            }
+
+            sample.stop(successfulLogins);
+        }catch(HashingCapacityExceededException ex){
+            sample.stop(busyLogins);
+            throw ex;
+        }catch(AuthenticationException ex){
+            sample.stop(failedLogins);
+            throw ex;
+        }
 
-        String jwt = jwtUtil.generateToken(user , userDetails);
+        String jwt = jwtUtil.generateToken(user , epoch);
 
         return ResponseEntity.ok(jwt);
     }
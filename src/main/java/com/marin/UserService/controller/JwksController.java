@@ -0,0 +1,48 @@
+package com.marin.UserService.controller;
+
+import com.marin.UserService.security.SigningKeyStore;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Endpoint that publishes the public keys of the tokens so other services can verify them without calling this API.
+ */
+@RestController
+public class JwksController {
+
+    private final SigningKeyStore keyStore;
+
+    /**
+     * How long clients may cache the key set, it must be shorter than the overlap of the keys (jwt.keys.overlap-minutes)
+     * so every client knows a new key before it starts signing.
+     */
+    private final CacheControl cacheControl;
+
+    @Autowired
+    public JwksController(SigningKeyStore keyStore , @Value("${jwt.keys.jwks-max-age-seconds:300}") long maxAgeSeconds){
+        this.keyStore = keyStore;
+        this.cacheControl = CacheControl.maxAge(Duration.ofSeconds(maxAgeSeconds)).cachePublic();
+    }
+
+    @GetMapping(value = "/.well-known/jwks.json" , produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Returns the keys to verify the tokens" , description = "Returns the JSON Web Key Set with the public keys that sign the tokens issued by this API")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200" , description = "Returns the key set")
+    })
+    public ResponseEntity<Map<String , Object>> fetchJwks(){
+        return ResponseEntity.ok()
+                .cacheControl(cacheControl)
+                .body(keyStore.jwks());
+    }
+}
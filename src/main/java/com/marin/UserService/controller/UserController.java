@@ -1,12 +1,23 @@
 package com.marin.UserService.controller;
 
 import com.marin.UserService.dto.UserDataDTO;
+import com.marin.UserService.dto.UserPageDTO;
+import com.marin.UserService.exception.InvalidCursorException;
 import com.marin.UserService.exception.NoUserFoundException;
+import com.marin.UserService.exception.UnsupportedExportFormatException;
+import com.marin.UserService.security.AuthenticatedUser;
+import com.marin.UserService.service.UserExportService;
+import com.marin.UserService.service.UserImportService;
 import com.marin.UserService.service.UserService;
+import com.marin.UserService.service.UserVersions;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -14,30 +25,53 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
-import java.util.List;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Endpoint for users information it holds both endpoints for Users and Admins
+ *
+ * Profiles and pages of users are returned with a strong ETag, requests sending it back in If-None-Match are answered
+ * with 304 without querying the database while the users involved don't change.
  */
 @RestController
 @RequestMapping("/users")
 public class UserController {
 
+    private static final String NDJSON = "application/x-ndjson";
+
     @Autowired
     UserService userService;
 
+    @Autowired
+    UserImportService userImportService;
+
+    @Autowired
+    UserExportService userExportService;
+
+    @Autowired
+    UserVersions userVersions;
+
     @PreAuthorize("hasRole('CLIENT')")
     @GetMapping("/profile")
     @Operation(summary = "Returns the current user profile" , description = "Returns the profile of the current authenticated user, it requires to send the bearer JWT token")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200" , description = "Returns the current user profile"),
+            @ApiResponse(responseCode = "304" , description = "The profile didn't change since the ETag sent"),
             @ApiResponse(responseCode = "401" , description = "No valid token was sent")
     })
-    public ResponseEntity<UserDataDTO> fetchUserData(@AuthenticationPrincipal UserDetails userDetails) throws NoUserFoundException {
+    public ResponseEntity<UserDataDTO> fetchUserData(@AuthenticationPrincipal UserDetails userDetails , WebRequest webRequest) throws NoUserFoundException {
+        String etag = userVersions.userTag(userDetails.getUsername());
+
+        if(etag != null && webRequest.checkNotModified(etag)){
+            return null;
+        }
+
         UserDataDTO userData = userService.fetchUserByName(userDetails.getUsername());
 
-        return ResponseEntity.ok(userData);
+        return cacheable(etag , userData);
     }
 
     @PreAuthorize("hasRole('ADMIN')")
@@ -45,25 +79,73 @@ public class UserController {
     @Operation(summary = "Returns a user profile" , description = "Returns the profile of the user given as path variable, it requires to send an ADMIN bearer JWT token")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200" , description = "Returns the requested user profile"),
+            @ApiResponse(responseCode = "304" , description = "The profile didn't change since the ETag sent"),
             @ApiResponse(responseCode = "401" , description = "No valid token was sent")
     })
-    public ResponseEntity<UserDataDTO> fetchUserProfile(@PathVariable String username) throws NoUserFoundException {
+    public ResponseEntity<UserDataDTO> fetchUserProfile(@PathVariable String username , WebRequest webRequest) throws NoUserFoundException {
+        String etag = userVersions.userTag(username);
+
+        if(etag != null && webRequest.checkNotModified(etag)){
+            return null;
+        }
+
         UserDataDTO userData = userService.fetchUserByName(username);
 
-        return ResponseEntity.ok(userData);
+        return cacheable(etag , userData);
     }
 
     @PreAuthorize("hasRole('ADMIN')")
     @GetMapping()
-    @Operation(summary = "Returns all registered users" , description = "Returns all registered users and all its data, it requires to send an ADMIN bearer JWT token")
+    @Operation(summary = "Returns a page of registered users" , description = "Returns a page of registered users ordered by ID, the next page is requested sending the returned cursor. It requires to send an ADMIN bearer JWT token")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200" , description = "Returns the requested user profile"),
+            @ApiResponse(responseCode = "200" , description = "Returns the requested page of users"),
+            @ApiResponse(responseCode = "304" , description = "No user changed since the ETag sent"),
+            @ApiResponse(responseCode = "400" , description = "The cursor is not valid"),
+            @ApiResponse(responseCode = "401" , description = "No valid token was sent")
+    })
+    public ResponseEntity<UserPageDTO> fetchAllUsers(@RequestParam(required = false) String cursor , @RequestParam(defaultValue = "50") int limit ,
+                                                     WebRequest webRequest) throws InvalidCursorException {
+        String etag = userVersions.listTag();
+
+        if(etag != null && webRequest.checkNotModified(etag)){
+            return null;
+        }
+
+        UserPageDTO usersPage = userService.fetchUsersPage(cursor , limit);
+
+        return cacheable(etag , usersPage);
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping(value = "/import" , consumes = NDJSON , produces = NDJSON)
+    @Operation(summary = "Imports users in bulk" , description = "Registers the users sent as NDJSON (one user per line with the same format as register) and streams back the result of every line as NDJSON, it requires to send an ADMIN bearer JWT token")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200" , description = "Returns the result of every imported line"),
+            @ApiResponse(responseCode = "401" , description = "No valid token was sent")
+    })
+    public void importUsers(HttpServletRequest request , HttpServletResponse response) throws IOException {
+        response.setContentType(NDJSON);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+
+        userImportService.importUsers(request.getInputStream() , response.getOutputStream());
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/export")
+    @Operation(summary = "Exports every user" , description = "Streams every registered user with its roles ordered by ID as NDJSON or CSV (format=csv), it requires to send an ADMIN bearer JWT token")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200" , description = "Streams every registered user"),
+            @ApiResponse(responseCode = "400" , description = "The format is not supported"),
             @ApiResponse(responseCode = "401" , description = "No valid token was sent")
     })
-    public ResponseEntity<List<UserDataDTO>> fetchAllUsers(){
-        List<UserDataDTO> usersData = userService.fetchAllUsers();
+    public void exportUsers(@RequestParam(defaultValue = "ndjson") String format , HttpServletResponse response) throws IOException , UnsupportedExportFormatException {
+        UserExportService.Format exportFormat = UserExportService.Format.fromName(format);
+
+        response.setContentType(exportFormat.contentType());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION , "attachment; filename=\"users." + exportFormat.extension() + "\"");
 
-        return ResponseEntity.ok(usersData);
+        userExportService.exportUsers(exportFormat , response.getOutputStream());
     }
 
     @DeleteMapping("/{id}")
@@ -78,6 +160,33 @@ public class UserController {
         return ResponseEntity.ok("User deleted");
     }
 
+    @PreAuthorize("hasRole('CLIENT')")
+    @PostMapping("/logout-all")
+    @Operation(summary = "Logs out every session of the current user" , description = "Revokes every token issued to the current authenticated user, including the one sent in this request")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200" , description = "Every token of the user was revoked"),
+            @ApiResponse(responseCode = "401" , description = "No valid token was sent")
+    })
+    public ResponseEntity<String> logoutAll(@AuthenticationPrincipal AuthenticatedUser user){
+        userService.logoutAll(user.getId());
+        return ResponseEntity.ok("Logged out from every session");
+    }
+
+    /**
+     * Returns the given body with its ETag, clients may keep it but must revalidate it before every use.
+     * Without ETag (the data just changed and the replicas may lag behind) the body is returned as is.
+     */
+    private static <T> ResponseEntity<T> cacheable(String etag , T body){
+        if(etag == null){
+            return ResponseEntity.ok(body);
+        }
+
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(body);
+    }
+
     /**
      * Handles exceptions that rise when you try to access a non-registered user profile
      */
@@ -85,4 +194,20 @@ public class UserController {
     public ResponseEntity<String> handleNoUserFoundException(NoUserFoundException ex){
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Error trying to fetch user details: " + ex.getMessage());
     }
+
+    /**
+     * Handles exceptions that rise when you request a page of users with a cursor not issued by this API
+     */
+    @ExceptionHandler
+    public ResponseEntity<String> handleInvalidCursorException(InvalidCursorException ex){
+        return ResponseEntity.badRequest().body("Error trying to fetch users: " + ex.getMessage());
+    }
+
+    /**
+     * Handles exceptions that rise when you request an export of users in a format not supported by this API
+     */
+    @ExceptionHandler
+    public ResponseEntity<String> handleUnsupportedExportFormatException(UnsupportedExportFormatException ex){
+        return ResponseEntity.badRequest().body("Error trying to export users: " + ex.getMessage());
+    }
 }
@@ -0,0 +1,54 @@
+package com.marin.UserService.datasource;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Pins to the primary database the requests of users that wrote recently, and remembers the users whose requests write.
+ *
+ * It runs after the security filter chain so the authenticated user is known. Every successful request that is not
+ * a GET counts as a write of its user.
+ */
+@Component
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    private final ReadYourWritesTracker tracker;
+
+    @Autowired
+    public ReadYourWritesFilter(ReadYourWritesTracker tracker){
+        this.tracker = tracker;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String username = authentication != null && authentication.getPrincipal() instanceof UserDetails user ? user.getUsername() : null;
+        boolean pinned = tracker.isRecent(username);
+
+        if(pinned){
+            tracker.pin();
+        }
+
+        try{
+            filterChain.doFilter(request , response);
+        }finally{
+            if(pinned){
+                tracker.unpin();
+            }
+        }
+
+        if(!"GET".equals(request.getMethod()) && response.getStatus() < 400){
+            tracker.recordWrite(username);
+        }
+    }
+}
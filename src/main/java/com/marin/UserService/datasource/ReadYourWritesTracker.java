@@ -0,0 +1,112 @@
+package com.marin.UserService.datasource;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the users that wrote recently so their reads go to the primary database until the replicas have caught up.
+ *
+ * A user is remembered for {@code datasource.replica.read-your-writes-millis} after its write (default 5000). Reads run on
+ * the primary while the current thread is pinned, see {@link #withWritesOf(String , Supplier)}.
+ * Without replicas ({@code datasource.replica.urls}) nothing is tracked.
+ */
+@Component
+public class ReadYourWritesTracker {
+
+    private static final ThreadLocal<Boolean> PINNED = new ThreadLocal<>();
+
+    private final boolean enabled;
+
+    private final long windowMillis;
+
+    private final Cache<String , Boolean> recentWriters;
+
+    @Autowired
+    public ReadYourWritesTracker(@Value("${datasource.replica.urls:}") String replicaUrls ,
+                                 @Value("${datasource.replica.read-your-writes-millis:5000}") long windowMillis){
+        this.enabled = !replicaUrls.isBlank();
+        this.windowMillis = windowMillis;
+        this.recentWriters = Caffeine.newBuilder()
+                .maximumSize(100000)
+                .expireAfterWrite(Duration.ofMillis(windowMillis))
+                .build();
+    }
+
+    /**
+     * Determines whether the current thread must read from the primary.
+     */
+    public static boolean isPinned(){
+        return PINNED.get() != null;
+    }
+
+    /**
+     * Remembers that the given user has just written.
+     *
+     * @param username Username of the user who wrote.
+     */
+    public void recordWrite(String username){
+        if(enabled && username != null){
+            recentWriters.put(normalize(username) , Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Determines whether the given user wrote within the read-your-writes window.
+     */
+    public boolean isRecent(String username){
+        return enabled && username != null && recentWriters.getIfPresent(normalize(username)) != null;
+    }
+
+    /**
+     * Determines whether the replicas had time to catch up with a write done at the given time.
+     *
+     * @param writeMillis Time of the write in milliseconds since the epoch.
+     * @return True if the write is older than the read-your-writes window or there are no replicas.
+     */
+    public boolean isSettled(long writeMillis){
+        return !enabled || System.currentTimeMillis() - writeMillis >= windowMillis;
+    }
+
+    /**
+     * Runs the given read on the primary if the given user wrote recently, otherwise it runs as usual.
+     *
+     * @param username Username of the user whose writes must be visible.
+     * @param read Read to run.
+     * @return Result of the read.
+     */
+    public <T> T withWritesOf(String username , Supplier<T> read){
+        if(!isRecent(username) || isPinned()){
+            return read.get();
+        }
+
+        PINNED.set(Boolean.TRUE);
+
+        try{
+            return read.get();
+        }finally{
+            PINNED.remove();
+        }
+    }
+
+    /**
+     * Pins the current thread to the primary until {@link #unpin()} is called.
+     */
+    void pin(){
+        PINNED.set(Boolean.TRUE);
+    }
+
+    void unpin(){
+        PINNED.remove();
+    }
+
+    private static String normalize(String username){
+        return username.toLowerCase(Locale.ROOT);
+    }
+}
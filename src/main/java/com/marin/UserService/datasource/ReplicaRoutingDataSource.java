@@ -0,0 +1,70 @@
+package com.marin.UserService.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * DataSource that sends the connections of read-only transactions to the replicas (round-robin) and every other
+ * connection to the primary.
+ *
+ * Threads pinned by the ReadYourWritesTracker always use the primary, so a user reads its own writes even if the
+ * replicas lag behind. It must be wrapped in a LazyConnectionDataSourceProxy so the connection is taken once the
+ * transaction is already marked as read-only.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+    private static final String PRIMARY = "primary";
+
+    private final List<String> replicaKeys = new ArrayList<>();
+
+    private final List<DataSource> dataSources = new ArrayList<>();
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaRoutingDataSource(DataSource primary , List<? extends DataSource> replicas){
+        Map<Object , Object> targets = new HashMap<>();
+        targets.put(PRIMARY , primary);
+
+        for(int i = 0; i < replicas.size(); i++){
+            String key = "replica-" + i;
+
+            replicaKeys.add(key);
+            targets.put(key , replicas.get(i));
+        }
+
+        dataSources.addAll(replicas);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey(){
+        if(replicaKeys.isEmpty()
+                || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                || ReadYourWritesTracker.isPinned()){
+            return PRIMARY;
+        }
+
+        return replicaKeys.get(Math.floorMod(next.getAndIncrement() , replicaKeys.size()));
+    }
+
+    /**
+     * Closes the pools of the replicas, the primary is closed by its own bean.
+     */
+    @Override
+    public void close() throws Exception {
+        for(DataSource dataSource : dataSources){
+            if(dataSource instanceof AutoCloseable closeable){
+                closeable.close();
+            }
+        }
+    }
+}
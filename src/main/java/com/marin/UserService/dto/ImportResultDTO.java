@@ -0,0 +1,27 @@
+package com.marin.UserService.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * Data Transfer Object with the result of importing a single line of a bulk import of users.
+ */
+public record ImportResultDTO(
+        @Schema(description = "Line of the imported body this result belongs to" , example = "12")
+        int line ,
+
+        @Schema(description = "Username of the line, null if the line couldn't be read" , example = "Jhon")
+        String username ,
+
+        @Schema(description = "Result of the import of the line" , example = "CREATED")
+        Status status ,
+
+        @Schema(description = "Reason of the status when the user wasn't created" , example = "password: Password must have at least 4 characters")
+        String message
+) {
+
+    public enum Status {
+        CREATED,
+        DUPLICATE,
+        INVALID
+    }
+}
@@ -0,0 +1,17 @@
+package com.marin.UserService.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+/**
+ * Data Transfer Object of a page of Users.
+ * The next page is requested by sending back the cursor of this page, if there are no more users the cursor is null.
+ */
+public record UserPageDTO(
+        @Schema(description = "Users of this page ordered by their ID")
+        List<UserDataDTO> users ,
+
+        @Schema(description = "Cursor to request the next page, null if this is the last page" , example = "MTI")
+        String nextCursor
+) { }
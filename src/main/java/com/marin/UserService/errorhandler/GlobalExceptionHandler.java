@@ -1,8 +1,12 @@
 package com.marin.UserService.errorhandler;
 
+import com.marin.UserService.exception.HashingCapacityExceededException;
 import io.swagger.v3.oas.annotations.Operation;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.ConstraintViolationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
@@ -21,13 +25,15 @@ import java.util.stream.Collectors;
 @RestControllerAdvice
 public class GlobalExceptionHandler {
 
+    private static final Logger log = LoggerFactory.getLogger(GlobalExceptionHandler.class);
+
     /**
      * Manages general unchecked exceptions that might present during the execution of the app.
      * This only prevents the app from crashing
      */
     @ExceptionHandler(RuntimeException.class)
     public ResponseEntity<String> handleRuntimeException(RuntimeException ex , HttpServletRequest request){
-        System.err.println(ex);
+        log.error("Unexpected error handling {} {}" , request.getMethod() , request.getRequestURI() , ex);
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Something unexpected happened on the server");
     }
 
@@ -36,7 +42,7 @@ public class GlobalExceptionHandler {
      */
     @ExceptionHandler(ConstraintViolationException.class)
     public ResponseEntity<String> handleConstraintViolation(ConstraintViolationException ex) {
-        System.err.println(ex);
+        log.debug("Constraint violation: {}" , ex.getMessage());
         return ResponseEntity.badRequest().body("Validation error: " + ex.getMessage());
     }
 
@@ -71,6 +77,18 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Bad credentials");
     }
 
+    /**
+     * Manages exceptions risen when the passwords can't be hashed because the hashing pool is saturated.
+     * The client is asked to retry after one second.
+     */
+    @ExceptionHandler(HashingCapacityExceededException.class)
+    public ResponseEntity<String> handleHashingCapacityExceeded(HashingCapacityExceededException ex){
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER , "1")
+                .body("The server is busy, try again later");
+    }
+
     @ExceptionHandler(AuthorizationDeniedException.class)
     public ResponseEntity<String> handleAuthorizationDenied(AuthorizationDeniedException ex){
         return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Access Denied");
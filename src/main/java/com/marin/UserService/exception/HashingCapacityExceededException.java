@@ -0,0 +1,12 @@
+package com.marin.UserService.exception;
+
+/**
+ * Exception to be thrown when a password can't be hashed or verified because the hashing pool is saturated.
+ * Clients should retry later, so it is answered with a 503 (Service Unavailable).
+ */
+public class HashingCapacityExceededException extends RuntimeException{
+
+    public HashingCapacityExceededException(String message){
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.marin.UserService.exception;
+
+/**
+ * Exception to be thrown when a page of users is requested with a cursor that wasn't issued by this API
+ */
+public class InvalidCursorException extends Exception{
+
+    public InvalidCursorException(String message){
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.marin.UserService.exception;
+
+/**
+ * Exception to be thrown when the users are requested to be exported in a format not supported by this API
+ */
+public class UnsupportedExportFormatException extends Exception{
+
+    public UnsupportedExportFormatException(String message){
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.marin.UserService.exception;
+
+/**
+ * Exception to be thrown when a user tries to register with a username that is already registered.
+ */
+public class UsernameTakenException extends RuntimeException{
+
+    public UsernameTakenException(String message){
+        super(message);
+    }
+}
@@ -1,24 +1,32 @@
 package com.marin.UserService.interceptor;
 
+import com.marin.UserService.security.JwtAuthenticationFilter;
+import com.marin.UserService.security.VerifiedToken;
+import com.marin.UserService.service.EndpointGroup;
+import com.marin.UserService.service.RateLimitProbe;
 import com.marin.UserService.service.RateLimiterService;
-import io.github.bucket4j.Bucket;
-import io.github.bucket4j.ConsumptionProbe;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.HandlerInterceptor;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * Component that sits between a received request to the API and the business logic and determines if the client
  * has enough requests left to grant him access to this API.
  *
- *  Currently, this rate limit only applies to auth requests.
+ * Every response carries the header X-RateLimit-Remaining with the requests the client has left, and rejected
+ * requests carry the header Retry-After with the seconds the client must wait before trying again.
  */
 @Component
 public class RateLimitInterceptor implements HandlerInterceptor {
 
+    public static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+
     private final RateLimiterService limiterService;
 
     @Autowired
@@ -35,17 +43,21 @@ public class RateLimitInterceptor implements HandlerInterceptor {
     @Override
     public boolean preHandle(HttpServletRequest request , HttpServletResponse response , Object handler) throws Exception {
 
-        String ipAddress = request.getRemoteAddr();
+        EndpointGroup group = EndpointGroup.resolve(request.getServletPath());
+        VerifiedToken token = (VerifiedToken) request.getAttribute(JwtAuthenticationFilter.VERIFIED_TOKEN_ATTRIBUTE);
 
-        Bucket tokenBucket = limiterService.resolveBucket(ipAddress);
-        ConsumptionProbe probe = tokenBucket.tryConsumeAndReturnRemaining(1);
+        RateLimitProbe probe = limiterService.tryConsume(group , request.getRemoteAddr() , token);
 
-        if(probe.isConsumed()){
+        response.setHeader(REMAINING_HEADER , String.valueOf(probe.remainingTokens()));
+
+        if(probe.consumed()){
             return true;
         }else{
-            System.err.println("Interceptor");
+            long retryAfterSeconds = Math.max(1 , TimeUnit.NANOSECONDS.toSeconds(probe.nanosToWaitForRefill() + TimeUnit.SECONDS.toNanos(1) - 1));
+
+            response.setHeader(HttpHeaders.RETRY_AFTER , String.valueOf(retryAfterSeconds));
             response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
-            response.getWriter().write("You've tried too many times, wait one minute and try again");
+            response.getWriter().write("You've tried too many times, wait " + retryAfterSeconds + " seconds and try again");
             return false;
         }
     }
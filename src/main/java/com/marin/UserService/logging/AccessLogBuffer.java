@@ -0,0 +1,66 @@
+package com.marin.UserService.logging;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded hand-off buffer between the request threads and the access log writer.
+ *
+ * Offering an entry never blocks nor takes a lock, when the buffer is full the entry is dropped and counted instead
+ * so a slow log output can never slow down the requests.
+ */
+public class AccessLogBuffer {
+
+    private final ConcurrentLinkedQueue<AccessLogEntry> queue = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final int capacity;
+
+    public AccessLogBuffer(int capacity){
+        this.capacity = capacity;
+    }
+
+    /**
+     * Hands off an entry to the writer.
+     *
+     * @param entry Entry to log.
+     * @return true if the entry was buffered or false if it was dropped because the buffer is full.
+     */
+    public boolean offer(AccessLogEntry entry){
+        if(size.incrementAndGet() > capacity){
+            size.decrementAndGet();
+            dropped.incrementAndGet();
+            return false;
+        }
+
+        queue.offer(entry);
+        return true;
+    }
+
+    /**
+     * Takes the oldest buffered entry.
+     *
+     * @return The oldest entry or null if the buffer is empty.
+     */
+    public AccessLogEntry poll(){
+        AccessLogEntry entry = queue.poll();
+
+        if(entry != null){
+            size.decrementAndGet();
+        }
+
+        return entry;
+    }
+
+    public int size(){
+        return size.get();
+    }
+
+    public long getDropped(){
+        return dropped.get();
+    }
+}
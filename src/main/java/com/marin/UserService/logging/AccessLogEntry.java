@@ -0,0 +1,23 @@
+package com.marin.UserService.logging;
+
+/**
+ * Single line of the access log, it is captured on the request thread and formatted by the {@link AccessLogWriter}.
+ *
+ * @param timestamp Epoch millis at which the request arrived.
+ * @param method HTTP method of the request.
+ * @param uri URI of the request without its query.
+ * @param status Status code of the response.
+ * @param durationMicros Time spent handling the request.
+ * @param remoteAddress Address of the client.
+ * @param principal Username of the authenticated client or null if it was not authenticated.
+ */
+public record AccessLogEntry(long timestamp , String method , String uri , int status , long durationMicros ,
+                             String remoteAddress , String principal) {
+
+    /**
+     * Determines whether this entry is a client or server error, errors are never sampled out.
+     */
+    public boolean isError(){
+        return status >= 400;
+    }
+}
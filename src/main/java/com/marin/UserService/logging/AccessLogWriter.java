@@ -0,0 +1,126 @@
+package com.marin.UserService.logging;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Structured access log of the API.
+ *
+ * Request threads only sample and buffer their entries, a single background thread formats them and writes them to
+ * the "access" logger so the request threads never wait on the log output.
+ *
+ * Errors (4xx and 5xx) are always logged while successful responses are logged with a probability of
+ * {@code access-log.sample-rate}.
+ */
+@Component
+public class AccessLogWriter implements DisposableBean {
+
+    private static final Logger accessLog = LoggerFactory.getLogger("access");
+
+    /**
+     * Time the writer sleeps when the buffer is empty.
+     */
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final AccessLogBuffer buffer;
+
+    private final double sampleRate;
+
+    private final Thread writer;
+
+    private volatile boolean running = true;
+
+    @Autowired
+    public AccessLogWriter(@Value("${access-log.sample-rate:0.1}") double sampleRate ,
+                           @Value("${access-log.buffer-capacity:8192}") int bufferCapacity ,
+                           MeterRegistry meterRegistry){
+        this.sampleRate = sampleRate;
+        this.buffer = new AccessLogBuffer(bufferCapacity);
+
+        Gauge.builder("access.log.buffer" , buffer , AccessLogBuffer::size)
+                .description("Access log entries waiting to be written")
+                .register(meterRegistry);
+
+        FunctionCounter.builder("access.log.dropped" , buffer , AccessLogBuffer::getDropped)
+                .description("Access log entries dropped because the buffer was full")
+                .register(meterRegistry);
+
+        this.writer = Thread.ofPlatform()
+                .name("access-log-writer")
+                .daemon()
+                .start(this::drainLoop);
+    }
+
+    /**
+     * Logs the given entry if it passes the sampling.
+     *
+     * @param entry Entry to log.
+     */
+    public void log(AccessLogEntry entry){
+        if(!entry.isError() && ThreadLocalRandom.current().nextDouble() >= sampleRate){
+            return;
+        }
+
+        buffer.offer(entry);
+    }
+
+    private void drainLoop(){
+        while(running){
+            if(!drain()){
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+
+        drain();
+    }
+
+    /**
+     * Writes every buffered entry.
+     *
+     * @return true if at least one entry was written.
+     */
+    private boolean drain(){
+        boolean wrote = false;
+        AccessLogEntry entry;
+
+        while((entry = buffer.poll()) != null){
+            write(entry);
+            wrote = true;
+        }
+
+        return wrote;
+    }
+
+    private void write(AccessLogEntry entry){
+        accessLog.info("{} {} {} {} {}us remote={} user={}" ,
+                Instant.ofEpochMilli(entry.timestamp()) ,
+                entry.method() ,
+                entry.uri() ,
+                entry.status() ,
+                entry.durationMicros() ,
+                entry.remoteAddress() ,
+                entry.principal() == null ? "-" : entry.principal());
+    }
+
+    /**
+     * Stops the writer after writing the entries still buffered.
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+    }
+}
@@ -0,0 +1,16 @@
+package com.marin.UserService.repository;
+
+/**
+ * Projection of the credentials of a User with one of its roles.
+ * A user with several roles is returned as one row per role, and a user without roles as a single row with a null role.
+ */
+public interface UserCredentialsView {
+
+    int getId();
+
+    String getUsername();
+
+    String getPassword();
+
+    String getRoleName();
+}
@@ -1,8 +1,15 @@
 package com.marin.UserService.repository;
 
+import com.marin.UserService.dto.UserDataDTO;
 import com.marin.UserService.entities.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -12,4 +19,43 @@ public interface UserRepository extends JpaRepository<User, Integer> {
 
     Optional<User> findByUsername(String username);
 
+    /**
+     * Returns only the id and username of the user with the given username, without loading its password or roles.
+     */
+    @Query("SELECT new com.marin.UserService.dto.UserDataDTO(u.id, u.username) FROM User u WHERE u.username = :username")
+    Optional<UserDataDTO> findDataByUsername(@Param("username") String username);
+
+    boolean existsByUsername(String username);
+
+    /**
+     * Returns the credentials of the user with the given username, one row for each of its roles.
+     * Only the name of the roles is selected so no Role entities are created.
+     */
+    @Transactional(readOnly = true)
+    @Query("SELECT u.id AS id, u.username AS username, u.password AS password, r.name AS roleName FROM User u LEFT JOIN u.roles r WHERE u.username = :username")
+    List<UserCredentialsView> findCredentialsByUsername(@Param("username") String username);
+
+    /**
+     * Replaces the password hash of the user with the given username.
+     *
+     * @return Number of updated users.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.password = :password WHERE u.username = :username")
+    int updatePassword(@Param("username") String username , @Param("password") String password);
+
+    /**
+     * Returns only the username of the user with the given ID.
+     */
+    @Query("SELECT u.username FROM User u WHERE u.id = :id")
+    Optional<String> findUsernameById(@Param("id") int id);
+
+    /**
+     * Returns the id and username of the users whose ID is greater than the given one ordered by ID.
+     * The size of the page is taken from the given pageable, its offset should always be zero.
+     */
+    @Query("SELECT new com.marin.UserService.dto.UserDataDTO(u.id, u.username) FROM User u WHERE u.id > :afterId ORDER BY u.id")
+    List<UserDataDTO> findDataPage(@Param("afterId") int afterId , Pageable pageable);
+
 }
@@ -0,0 +1,34 @@
+package com.marin.UserService.security;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collection;
+
+/**
+ * Principal of an authenticated client of this API.
+ * It extends the Spring Security User to also carry the ID of the user, so it can be used without fetching the user again.
+ */
+public class AuthenticatedUser extends User {
+
+    private final int id;
+
+    public AuthenticatedUser(int id, String username, String password, Collection<? extends GrantedAuthority> authorities) {
+        super(username, password, authorities);
+        this.id = id;
+    }
+
+    /**
+     * Returns a copy of this user with the given password.
+     *
+     * @param password Password of the copy.
+     * @return Copy of this user.
+     */
+    public AuthenticatedUser withPassword(String password){
+        return new AuthenticatedUser(id , getUsername() , password , getAuthorities());
+    }
+
+    public int getId() {
+        return id;
+    }
+}
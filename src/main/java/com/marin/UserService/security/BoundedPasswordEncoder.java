@@ -0,0 +1,171 @@
+package com.marin.UserService.security;
+
+import com.marin.UserService.exception.HashingCapacityExceededException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Password encoder that runs the hashing and verification of passwords of another encoder in a dedicated pool of threads.
+ *
+ * Hashing passwords is expensive on purpose, running it in a pool of its own with a bounded queue keeps a burst of logins
+ * from taking every request thread. When the queue is full the request fails fast with a HashingCapacityExceededException.
+ *
+ * Bulk hashing ({@link #encodeAll(List)}) runs in a smaller pool of its own, so an import never fills the queue of the
+ * logins and registrations.
+ *
+ * The depth of the queues is exported as 'password.hash.queue' and 'password.hash.bulk.queue' and the time spent hashing as 'password.hash'.
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder , DisposableBean {
+
+    private final PasswordEncoder delegate;
+
+    private final ThreadPoolExecutor executor;
+
+    private final ThreadPoolExecutor bulkExecutor;
+
+    private final Timer encodeTimer;
+
+    private final Timer verifyTimer;
+
+    private final Counter rejectedCounter;
+
+    public BoundedPasswordEncoder(PasswordEncoder delegate , int threads , int queueCapacity , int bulkThreads , MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.executor = new ThreadPoolExecutor(threads , threads , 0L , TimeUnit.MILLISECONDS ,
+                new ArrayBlockingQueue<>(queueCapacity) ,
+                new CustomizableThreadFactory("password-hashing-") ,
+                new ThreadPoolExecutor.AbortPolicy());
+        this.bulkExecutor = new ThreadPoolExecutor(bulkThreads , bulkThreads , 0L , TimeUnit.MILLISECONDS ,
+                new ArrayBlockingQueue<>(bulkThreads * 2) ,
+                new CustomizableThreadFactory("password-hashing-bulk-") ,
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.encodeTimer = Timer.builder("password.hash")
+                .description("Time spent hashing or verifying passwords")
+                .tag("operation" , "encode")
+                .register(meterRegistry);
+
+        this.verifyTimer = Timer.builder("password.hash")
+                .description("Time spent hashing or verifying passwords")
+                .tag("operation" , "verify")
+                .register(meterRegistry);
+
+        this.rejectedCounter = Counter.builder("password.hash.rejected")
+                .description("Password operations rejected because the hashing pool was saturated")
+                .register(meterRegistry);
+
+        Gauge.builder("password.hash.queue" , executor , pool -> pool.getQueue().size())
+                .description("Password operations waiting for a hashing thread")
+                .register(meterRegistry);
+
+        Gauge.builder("password.hash.bulk.queue" , bulkExecutor , pool -> pool.getQueue().size())
+                .description("Bulk password operations waiting for a bulk hashing thread")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return execute(() -> delegate.encode(rawPassword) , encodeTimer);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword , String encodedPassword) {
+        return execute(() -> delegate.matches(rawPassword , encodedPassword) , verifyTimer);
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    /**
+     * Hashes all the given passwords in parallel using the bulk hashing pool, the pool of the logins is never used.
+     * Instead of failing when the bulk queue is full the exceeding passwords are hashed by the calling thread, which also
+     * slows down the caller until the pool catches up.
+     *
+     * @param rawPasswords Passwords to hash.
+     * @return Hashes of the passwords in the same order.
+     */
+    public List<String> encodeAll(List<? extends CharSequence> rawPasswords){
+        List<FutureTask<String>> tasks = new ArrayList<>(rawPasswords.size());
+
+        for(CharSequence rawPassword : rawPasswords){
+            FutureTask<String> task = new FutureTask<>(() -> encodeTimer.recordCallable(() -> delegate.encode(rawPassword)));
+
+            try{
+                bulkExecutor.execute(task);
+            }catch(RejectedExecutionException ex){
+                task.run();
+            }
+
+            tasks.add(task);
+        }
+
+        List<String> encodedPasswords = new ArrayList<>(tasks.size());
+
+        for(FutureTask<String> task : tasks){
+            encodedPasswords.add(await(task));
+        }
+
+        return encodedPasswords;
+    }
+
+    /**
+     * Runs the given operation in the hashing pool and waits for its result.
+     *
+     * @throws HashingCapacityExceededException If the queue of the hashing pool is full.
+     */
+    private <T> T execute(Callable<T> operation , Timer timer){
+        Future<T> result;
+
+        try{
+            result = executor.submit(() -> timer.recordCallable(operation));
+        }catch(RejectedExecutionException ex){
+            rejectedCounter.increment();
+            throw new HashingCapacityExceededException("Too many password operations in progress");
+        }
+
+        return await(result);
+    }
+
+    /**
+     * Waits for the result of an operation running in the hashing pool.
+     */
+    private <T> T await(Future<T> result){
+        try{
+            return result.get();
+        }catch(InterruptedException ex){
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a password operation" , ex);
+        }catch(ExecutionException ex){
+            if(ex.getCause() instanceof RuntimeException runtimeException){
+                throw runtimeException;
+            }
+
+            throw new IllegalStateException("Password operation failed" , ex.getCause());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+        bulkExecutor.shutdown();
+    }
+}
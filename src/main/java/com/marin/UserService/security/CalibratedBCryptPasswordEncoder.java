@@ -0,0 +1,96 @@
+package com.marin.UserService.security;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.Duration;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * BCrypt password encoder whose cost (strength) can be calibrated against a target hashing time.
+ *
+ * A stored hash is only upgraded when its cost is lower than the configured one. The cost is calibrated by every
+ * instance on its own hardware, so rehashing on any difference would rewrite the hashes back and forth whenever the
+ * logins of a user land on instances with different costs.
+ */
+public class CalibratedBCryptPasswordEncoder extends BCryptPasswordEncoder {
+
+    private static final Pattern BCRYPT_COST_PATTERN = Pattern.compile("^\\$2[aby]?\\$(\\d\\d)\\$.*");
+
+    /**
+     * Max cost allowed by BCrypt.
+     */
+    private static final int MAX_STRENGTH = 31;
+
+    private final int strength;
+
+    public CalibratedBCryptPasswordEncoder(int strength) {
+        super(strength);
+        this.strength = strength;
+    }
+
+    /**
+     * Finds the highest BCrypt cost whose hashing time doesn't exceed the given target on this machine.
+     * Every step of cost doubles the hashing time, so the calibration takes about twice the target.
+     *
+     * @param target Max time a single hash should take.
+     * @param minStrength Lowest cost allowed, it is returned even if it exceeds the target.
+     * @param maxStrength Highest cost allowed.
+     * @return Calibrated cost.
+     */
+    public static int calibrate(Duration target , int minStrength , int maxStrength){
+        int strength = minStrength;
+
+        // Warm-up so the first measure is not inflated by the JIT
+        new BCryptPasswordEncoder(minStrength).encode("calibration");
+
+        for(int candidate = minStrength ; candidate <= Math.min(maxStrength , MAX_STRENGTH) ; candidate++){
+            BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(candidate);
+
+            long start = System.nanoTime();
+            encoder.encode("calibration");
+            long elapsed = System.nanoTime() - start;
+
+            if(elapsed > target.toNanos()){
+                break;
+            }
+
+            strength = candidate;
+        }
+
+        return strength;
+    }
+
+    /**
+     * Returns the cost used to create the given BCrypt hash.
+     *
+     * @param encodedPassword BCrypt hash.
+     * @return Cost of the hash or -1 if it is not a BCrypt hash.
+     */
+    public static int costOf(String encodedPassword){
+        if(encodedPassword == null){
+            return -1;
+        }
+
+        Matcher matcher = BCRYPT_COST_PATTERN.matcher(encodedPassword);
+
+        return matcher.matches() ? Integer.parseInt(matcher.group(1)) : -1;
+    }
+
+    /**
+     * Determines whether the given hash must be rehashed, which happens when its cost is lower than the configured one.
+     *
+     * @param encodedPassword Stored hash of the password.
+     * @return True if the hash must be upgraded, False otherwise
+     */
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        int cost = costOf(encodedPassword);
+
+        return cost >= 0 && cost < strength;
+    }
+
+    public int getStrength() {
+        return strength;
+    }
+}
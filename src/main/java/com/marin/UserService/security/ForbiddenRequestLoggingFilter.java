@@ -1,24 +0,0 @@
-package com.marin.UserService.security;
-
-import jakarta.servlet.FilterChain;
-import jakarta.servlet.ServletException;
-import jakarta.servlet.http.HttpServletRequest;
-import jakarta.servlet.http.HttpServletResponse;
-import org.springframework.stereotype.Component;
-import org.springframework.web.filter.OncePerRequestFilter;
-
-import java.io.IOException;
-
-@Component
-public class ForbiddenRequestLoggingFilter extends OncePerRequestFilter {
-
-    @Override
-    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
-            throws ServletException, IOException {
-        filterChain.doFilter(request, response);
-
-        if (response.getStatus() == HttpServletResponse.SC_FORBIDDEN) {
-            System.out.println("Forbidden Access: " + request.getRequestURI());
-        }
-    }
-}
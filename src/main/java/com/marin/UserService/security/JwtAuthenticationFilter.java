@@ -5,38 +5,57 @@ import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import org.springframework.boot.autoconfigure.security.SecurityProperties;
-import org.springframework.core.annotation.Order;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
-import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.List;
 
 /**
  * Establishes the logic for extraction and validation of JWT tokens sent from the Clients to grant them access to this API operations.
+ *
+ * This filter is only registered inside the security filter chain (see SecurityConfig), it is not a component so it doesn't
+ * get registered a second time as a plain servlet filter.
  */
-@Component
-@Order(SecurityProperties.DEFAULT_FILTER_ORDER)
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
-    private JwtUtil jwtUtil;
+    /**
+     * Name of the request attribute that holds the VerifiedToken of the current request.
+     * Any later component that needs the token data should read it from this attribute instead of parsing the token again.
+     */
+    public static final String VERIFIED_TOKEN_ATTRIBUTE = JwtAuthenticationFilter.class.getName() + ".VERIFIED_TOKEN";
+
+    private final JwtUtil jwtUtil;
+
+    private final CustomUserDetailsService userDetailService;
 
-    private CustomUserDetailsService userDetailService;
+    private final TokenEpochRegistry epochRegistry;
 
-    public JwtAuthenticationFilter(JwtUtil jwtUtil, CustomUserDetailsService userDetailService) {
+    /**
+     * Determines whether the principal is built from the claims of the token (True) or loaded from the database (False).
+     */
+    private final boolean stateless;
+
+    public JwtAuthenticationFilter(JwtUtil jwtUtil, CustomUserDetailsService userDetailService, TokenEpochRegistry epochRegistry, boolean stateless) {
         this.jwtUtil = jwtUtil;
         this.userDetailService = userDetailService;
+        this.epochRegistry = epochRegistry;
+        this.stateless = stateless;
     }
 
     /**
      * Determines the request has a barer token.
-     * If the request has a token it extracts the subject of the token and tries to match it with a registered user in the database,
+     * If the request has a token it verifies it once, extracts its subject and tries to match it with a registered user in the database,
      * if the token contains a registered user it then loads its credentials, and it grants him access.
      *
+     * Tokens whose epoch is older than the current epoch of their user are revoked and rejected before loading any credentials.
+     * In stateless mode the database is not queried, the credentials are built from the claims of the token.
+     *
      * If a request has no token is let pass and will only work for auth requests.
      */
     @Override
@@ -45,22 +64,40 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         String token = extractJwtFromRequest(request);
 
         if (token != null) {
-            String username = jwtUtil.extractUsername(token);
-            UserDetails userDetails = userDetailService.loadUserByUsername(username);
+            VerifiedToken verifiedToken = jwtUtil.verifyToken(token);
 
-            if (jwtUtil.validateToken(token , userDetails) && userDetails.getUsername().equals(username)) {
-                UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
-                        userDetails, null, userDetails.getAuthorities()
-                );
+            if (epochRegistry.isCurrent(verifiedToken)) {
+                UserDetails userDetails = stateless ? buildUserDetails(verifiedToken) : userDetailService.loadUserByUsername(verifiedToken.subject());
 
-                authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                SecurityContextHolder.getContext().setAuthentication(authentication);
+                if (jwtUtil.validateToken(verifiedToken , userDetails)) {
+                    UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                            userDetails, null, userDetails.getAuthorities()
+                    );
+
+                    authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                    SecurityContextHolder.getContext().setAuthentication(authentication);
+                    request.setAttribute(VERIFIED_TOKEN_ATTRIBUTE , verifiedToken);
+                }
             }
         }
 
         filterChain.doFilter(request, response);
     }
 
+    /**
+     * Builds the credentials of the bearer of the token using only its verified claims.
+     * The password is left empty as it is never needed once a token has been issued.
+     *
+     * @return UserDetails of the token bearer.
+     */
+    private UserDetails buildUserDetails(VerifiedToken token){
+        List<GrantedAuthority> authorities = token.roles().stream()
+                .map(role -> (GrantedAuthority) new SimpleGrantedAuthority(role))
+                .toList();
+
+        return new AuthenticatedUser(token.id() , token.subject() , "" , authorities);
+    }
+
     /**
      * Extracts the JWT token from the request header and returns it.
      *
@@ -1,29 +1,59 @@
 package com.marin.UserService.security;
 
-import com.marin.UserService.dto.UserDataDTO;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.LocatorAdapter;
+import io.jsonwebtoken.UnsupportedJwtException;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.security.Key;
+import java.security.PublicKey;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Component for managing JWT tokens.
  * This component manages creation, validation and other operations related to the JWT token.
+ *
+ * Tokens are signed with RS256 using the current key of the SigningKeyStore and carry its id in the 'kid' header, so
+ * other services can verify them with the public keys published in /.well-known/jwks.json.
  */
 @Component
 public class JwtUtil {
 
     /**
-     * Secret KEY used to sign the tokens.
-     * It MUST remain the same throughout the deployment otherwise it will throw validation errors of prior tokens.
+     * Store of the keys used to sign and verify the tokens.
      */
-    private final SecretKey secretKey;
+    private final SigningKeyStore keyStore;
+
+    /**
+     * Parser used to verify the tokens, it finds the key of every token by its 'kid' header.
+     * It is immutable and thread safe, so it is built once and shared by all requests.
+     */
+    private final JwtParser parser;
+
+    /**
+     * Cache of already verified tokens to avoid verifying the same token on every request.
+     */
+    private final VerifiedTokenCache tokenCache;
+
+    /**
+     * Time spent verifying tokens, split by whether the token was valid or not.
+     * The share of verifications served by the cache is exported by the cache metrics (verifiedTokens).
+     */
+    private final Timer validVerifications;
+
+    private final Timer invalidVerifications;
 
     /**
      * Determines the length of a day in milliseconds.
@@ -31,31 +61,92 @@ public class JwtUtil {
     private final int ONE_DAY_MILIS = 86400000;
 
     /**
-     * Creates a JwtUtil object using the secret key stored in the properties of this app.
+     * Creates a JwtUtil object that signs with the keys of the given store.
+     *
+     * Tokens signed with the secret key stored in the properties of this app (HS256, without 'kid') are rejected unless
+     * 'jwt.legacy-hs256.enabled' is true. It's meant to be enabled only for one token lifetime after moving to RS256, so
+     * the tokens issued before remain valid until they expire: while enabled anyone knowing the secret can mint tokens.
      */
-    private JwtUtil(@Value("${jwt.secret}") String secret){
-        secretKey = Keys.hmacShaKeyFor(secret.getBytes());
+    public JwtUtil(@Value("${jwt.secret}") String secret ,
+                   @Value("${jwt.legacy-hs256.enabled:false}") boolean acceptLegacyTokens ,
+                   SigningKeyStore keyStore ,
+                   VerifiedTokenCache tokenCache ,
+                   MeterRegistry meterRegistry){
+        SecretKey legacyKey = acceptLegacyTokens ? Keys.hmacShaKeyFor(secret.getBytes()) : null;
+
+        this.keyStore = keyStore;
+        this.parser = Jwts.parser().keyLocator(new SigningKeyLocator(keyStore , legacyKey)).build();
+        this.tokenCache = tokenCache;
+
+        validVerifications = verificationTimer("valid" , meterRegistry);
+        invalidVerifications = verificationTimer("invalid" , meterRegistry);
+    }
+
+    private static Timer verificationTimer(String outcome , MeterRegistry meterRegistry){
+        return Timer.builder("jwt.verification")
+                .description("Time spent verifying JWT tokens")
+                .tag("outcome" , outcome)
+                .register(meterRegistry);
     }
 
     /**
      * Generates a JWT token and signs it with the secret key of this object.
      * The JWT tokens contains the signed claim subject for the username of the user to authenticate.
-     * This token also contains the roles of the authenticated user.
+     * This token also contains the id, roles and token epoch of the authenticated user.
      *
-     * @param user User to be used to generate the token.
+     * @param user Authenticated user to be used to generate the token.
+     * @param epoch Current token epoch of the user.
      * @return Signed JWT token.
      */
-    public String generateToken(UserDataDTO user , UserDetails userDetails) {
+    public String generateToken(AuthenticatedUser user , int epoch) {
+        SigningKeyStore.SigningKey signingKey = keyStore.signingKey();
+
         return Jwts.builder()
-                .subject(user.username())
-                .claim("id" , user.id())
-                .claim("roles", userDetails.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList())
+                .header().keyId(signingKey.kid()).and()
+                .subject(user.getUsername())
+                .claim("id" , user.getId())
+                .claim("epoch" , epoch)
+                .claim("roles", user.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList())
                 .issuedAt(new Date())
                 .expiration(new Date(System.currentTimeMillis() + ONE_DAY_MILIS))
-                .signWith(secretKey , Jwts.SIG.HS256)
+                .signWith(signingKey.privateKey() , Jwts.SIG.RS256)
                 .compact();
     }
 
+    /**
+     * Parses the given token verifying its signature and returns its data as a VerifiedToken.
+     * This is the only place where a token is parsed, so every caller should keep the returned object
+     * instead of parsing the same token again.
+     *
+     * Tokens that were already verified are taken from the token cache until they expire.
+     *
+     * @param token Token to verify.
+     * @return VerifiedToken with the claims of the token.
+     * @throws JwtException If the token is malformed, expired or its signature doesn't match.
+     */
+    public VerifiedToken verifyToken(String token){
+        long start = System.nanoTime();
+
+        try{
+            VerifiedToken verified = tokenCache.get(token , this::parseToken);
+            validVerifications.record(System.nanoTime() - start , TimeUnit.NANOSECONDS);
+
+            return verified;
+        }catch(RuntimeException ex){
+            invalidVerifications.record(System.nanoTime() - start , TimeUnit.NANOSECONDS);
+            throw ex;
+        }
+    }
+
+    /**
+     * Parses and verifies the signature of the given token.
+     */
+    private VerifiedToken parseToken(String token){
+        Claims claims = parser.parseSignedClaims(token).getPayload();
+
+        return VerifiedToken.fromClaims(claims);
+    }
+
     /**
      * Extracts the username of the user used to create the token given as parameter.
      * The username comes in the signed claim subject of the token.
@@ -64,12 +155,7 @@ public class JwtUtil {
      * @return Username of the user of this token.
      */
     public String extractUsername(String token){
-        return Jwts.parser()
-                .verifyWith(secretKey)
-                .build()
-                .parseSignedClaims(token)
-                .getPayload()
-                .getSubject();
+        return verifyToken(token).subject();
     }
 
     /**
@@ -80,41 +166,54 @@ public class JwtUtil {
      * @return User id
      */
     public int extractUserId(String token){
-        Claims claims = Jwts.parser()
-                .verifyWith(secretKey)
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
-
-        return claims.get("id" , Integer.class);
+        return verifyToken(token).id();
     }
 
     /**
-     * Determines whether a given token is valid or not.
+     * Determines whether a verified token is valid or not.
      * A token can be invalid if its either expired or it doesn't match its bearer credentials.
      *
-     * @param token Token to validate
+     * @param token Verified token to validate
      * @param userDetails User details to contrast against the token
      * @return True if the token is valid, False otherwise
      */
-    public boolean validateToken(String token , UserDetails userDetails){
-        String username = extractUsername(token);
-
-        return username.equals(userDetails.getUsername()) && !isTokenExpired(token);
+    public boolean validateToken(VerifiedToken token , UserDetails userDetails){
+        return token.subject().equals(userDetails.getUsername()) && !token.isExpired();
     }
 
     /**
-     * Determines whether a token is expired or not based on the time elapsed between its creation and now
-     *
-     * @param token Token to verify its expiration.
-     * @return True if its expired, False otherwise
+     * Finds the key to verify a token with: the public key of its 'kid' or the legacy secret key if it has no 'kid'.
+     * The parser rejects tokens whose algorithm doesn't match the type of the key, so a legacy token can't claim RS256 nor the other way around.
      */
-    private boolean isTokenExpired(String token){
-        return Jwts.parser()
-                .verifyWith(secretKey)
-                .build()
-                .parseSignedClaims(token)
-                .getPayload()
-                .getExpiration().before(new Date());
+    private static class SigningKeyLocator extends LocatorAdapter<Key> {
+
+        private final SigningKeyStore keyStore;
+
+        private final SecretKey legacyKey;
+
+        SigningKeyLocator(SigningKeyStore keyStore , SecretKey legacyKey){
+            this.keyStore = keyStore;
+            this.legacyKey = legacyKey;
+        }
+
+        @Override
+        protected Key locate(JwsHeader header){
+            String kid = header.getKeyId();
+
+            if(kid == null){
+                if(legacyKey == null){
+                    throw new UnsupportedJwtException("Tokens without key id are not accepted");
+                }
+                return legacyKey;
+            }
+
+            PublicKey key = keyStore.publicKey(kid);
+
+            if(key == null){
+                throw new UnsupportedJwtException("Unknown signing key");
+            }
+
+            return key;
+        }
     }
 }
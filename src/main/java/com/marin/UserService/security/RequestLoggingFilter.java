@@ -1,23 +1,59 @@
 package com.marin.UserService.security;
 
+import com.marin.UserService.logging.AccessLogEntry;
+import com.marin.UserService.logging.AccessLogWriter;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
-import jakarta.servlet.ServletRequest;
-import jakarta.servlet.ServletResponse;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 
+/**
+ * Captures every request into the access log.
+ *
+ * This filter runs right before the security filter chain so it also logs the requests rejected by it (401 and 403).
+ */
 @Component
+@Order(SecurityProperties.DEFAULT_FILTER_ORDER - 1)
 public class RequestLoggingFilter extends OncePerRequestFilter {
 
+    private final AccessLogWriter accessLog;
+
+    @Autowired
+    public RequestLoggingFilter(AccessLogWriter accessLog){
+        this.accessLog = accessLog;
+    }
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
-        HttpServletRequest req = (HttpServletRequest) request;
-        System.out.println("Accessed Resource: " + req.getRequestURI());
-        filterChain.doFilter(request , response);
+        long timestamp = System.currentTimeMillis();
+        long start = System.nanoTime();
+        int status = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+
+        try{
+            filterChain.doFilter(request , response);
+            status = response.getStatus();
+        }finally{
+            long durationMicros = (System.nanoTime() - start) / 1_000;
+
+            accessLog.log(new AccessLogEntry(timestamp , request.getMethod() , request.getRequestURI() , status ,
+                    durationMicros , request.getRemoteAddr() , principalOf(request)));
+        }
+    }
+
+    /**
+     * Returns the username of the token verified for this request, the security context can't be used because it is
+     * already cleared once the security filter chain returns.
+     */
+    private String principalOf(HttpServletRequest request){
+        Object token = request.getAttribute(JwtAuthenticationFilter.VERIFIED_TOKEN_ATTRIBUTE);
+
+        return token instanceof VerifiedToken verified ? verified.subject() : null;
     }
 }
@@ -0,0 +1,353 @@
+package com.marin.UserService.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Store of the RSA key pairs used to sign the tokens (RS256).
+ *
+ * The keys are kept in the 'jwt_signing_keys' table so every instance of the API signs with the same keys, their private
+ * part is encrypted with AES-GCM using a key derived from 'jwt.secret'. Every key has an activation time: a new key is
+ * created {@code jwt.keys.overlap-minutes} before the current one is {@code jwt.keys.rotation-hours} old, so it's already
+ * published in the JWKS when it starts signing, and it stays published until every token it signed has expired.
+ *
+ * Every instance reloads the keys every {@code jwt.keys.refresh-millis}, and creates the next key when it's due. Every key
+ * has a generation, one more than the key before it, which is unique in the table: when several instances create the
+ * next key at the same time only one of them is stored and the others load it.
+ */
+@Component
+public class SigningKeyStore implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(SigningKeyStore.class);
+
+    private static final int KEY_SIZE = 2048;
+
+    private static final int GCM_IV_BYTES = 12;
+
+    private static final int GCM_TAG_BITS = 128;
+
+    /**
+     * Lifetime of the tokens, a key must be published at least this long after it stops signing.
+     */
+    private static final long TOKEN_LIFETIME_MILIS = 86400000;
+
+    /**
+     * Minimum time between reloads caused by tokens signed with an unknown key.
+     */
+    private static final long MIN_RELOAD_INTERVAL_MILIS = 1000;
+
+    private static final Base64.Encoder BASE64_URL = Base64.getUrlEncoder().withoutPadding();
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final SecretKey encryptionKey;
+
+    private final long rotationMilis;
+
+    private final long overlapMilis;
+
+    private final SecureRandom random = new SecureRandom();
+
+    private final ReentrantLock rotationLock = new ReentrantLock();
+
+    private final AtomicLong lastReload = new AtomicLong();
+
+    /**
+     * Number of reloads started, a reload never replaces the keys loaded by a reload started after it.
+     */
+    private final AtomicLong reloads = new AtomicLong();
+
+    private final AtomicReference<KeySet> keySet = new AtomicReference<>(new KeySet(0 , 0 , Map.of() , List.of() , Map.of("keys" , List.of())));
+
+    private final LongSupplier clock;
+
+    @Autowired
+    public SigningKeyStore(JdbcTemplate jdbcTemplate ,
+                           @Value("${jwt.secret}") String secret ,
+                           @Value("${jwt.keys.rotation-hours:24}") long rotationHours ,
+                           @Value("${jwt.keys.overlap-minutes:15}") long overlapMinutes){
+        this(jdbcTemplate , secret , rotationHours , overlapMinutes , System::currentTimeMillis);
+    }
+
+    /**
+     * Creates a store that reads the current time in milliseconds from the given clock.
+     */
+    SigningKeyStore(JdbcTemplate jdbcTemplate , String secret , long rotationHours , long overlapMinutes , LongSupplier clock){
+        this.jdbcTemplate = jdbcTemplate;
+        this.clock = clock;
+        this.encryptionKey = deriveEncryptionKey(secret);
+        this.rotationMilis = Math.max(1 , rotationHours) * 3600000;
+        this.overlapMilis = Math.min(rotationMilis / 2 , Math.max(0 , overlapMinutes) * 60000);
+    }
+
+    /**
+     * Loads the keys once all the beans are created, so the schema has already been initialized.
+     */
+    @Override
+    public void afterSingletonsInstantiated(){
+        rotate();
+    }
+
+    /**
+     * Reloads the keys from the database, creates the next key if it's due and removes the keys no token can use anymore.
+     */
+    @Scheduled(fixedDelayString = "${jwt.keys.refresh-millis:60000}")
+    public void rotate(){
+        rotationLock.lock();
+
+        try{
+            long now = clock.getAsLong();
+            reload();
+
+            KeySet keys = keySet.get();
+            List<SigningKey> signingKeys = keys.signingKeys();
+
+            if(signingKeys.isEmpty()){
+                createKey(keys.newestGeneration() + 1 , now);
+                reload();
+            }else{
+                long newestActivation = signingKeys.get(0).activatesAt();
+
+                if(now >= newestActivation + rotationMilis - overlapMilis){
+                    createKey(keys.newestGeneration() + 1 , Math.max(newestActivation + rotationMilis , now + overlapMilis));
+                    reload();
+                }
+            }
+
+            String current = signingKey().kid();
+            if(jdbcTemplate.update("DELETE FROM jwt_signing_keys WHERE expires_at < ? AND kid <> ?" , now , current) > 0){
+                reload();
+            }
+        }finally{
+            rotationLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the key tokens must be signed with, the newest key already active.
+     *
+     * @return Current signing key.
+     * @throws IllegalStateException If there is no active key.
+     */
+    public SigningKey signingKey(){
+        long now = clock.getAsLong();
+
+        for(SigningKey key : keySet.get().signingKeys()){
+            if(key.activatesAt() <= now){
+                return key;
+            }
+        }
+
+        throw new IllegalStateException("There is no active signing key");
+    }
+
+    /**
+     * Returns the public key of the given key id.
+     * Unknown key ids reload the keys (at most once per second) in case another instance has just created the key.
+     *
+     * @param kid Key id of a token.
+     * @return Public key or null if the key is unknown.
+     */
+    public PublicKey publicKey(String kid){
+        PublicKey key = keySet.get().publicKeys().get(kid);
+
+        if(key == null){
+            long now = clock.getAsLong();
+            long last = lastReload.get();
+
+            if(now - last >= MIN_RELOAD_INTERVAL_MILIS && lastReload.compareAndSet(last , now)){
+                reload();
+                key = keySet.get().publicKeys().get(kid);
+            }
+        }
+
+        return key;
+    }
+
+    /**
+     * Returns the JSON Web Key Set with the public keys of every key that may have signed a live token or is about to sign.
+     *
+     * @return JWKS ready to be serialized.
+     */
+    public Map<String , Object> jwks(){
+        return keySet.get().jwks();
+    }
+
+    /**
+     * Loads the keys from the database, it runs both in rotations and in requests with unknown key ids so the keys are
+     * only replaced when no reload started later has replaced them already.
+     */
+    private void reload(){
+        long sequence = reloads.incrementAndGet();
+        List<KeyRow> rows = jdbcTemplate.query(
+                "SELECT kid, public_key, private_key, generation, activates_at FROM jwt_signing_keys" ,
+                (rs , rowNum) -> new KeyRow(rs.getString(1) , rs.getBytes(2) , rs.getBytes(3) , rs.getLong(4) , rs.getLong(5)));
+
+        Map<String , PublicKey> publicKeys = new HashMap<>();
+        List<SigningKey> signingKeys = new ArrayList<>();
+        List<Map<String , Object>> jwks = new ArrayList<>();
+        long newestGeneration = 0;
+
+        rows.sort(Comparator.comparingLong(KeyRow::activatesAt).reversed().thenComparing(KeyRow::kid));
+
+        for(KeyRow row : rows){
+            newestGeneration = Math.max(newestGeneration , row.generation());
+
+            try{
+                KeyFactory keyFactory = KeyFactory.getInstance("RSA");
+                RSAPublicKey publicKey = (RSAPublicKey) keyFactory.generatePublic(new X509EncodedKeySpec(row.publicKey()));
+                PrivateKey privateKey = keyFactory.generatePrivate(new PKCS8EncodedKeySpec(decrypt(row.privateKey() , row.kid())));
+
+                publicKeys.put(row.kid() , publicKey);
+                signingKeys.add(new SigningKey(row.kid() , privateKey , row.activatesAt()));
+                jwks.add(toJwk(row.kid() , publicKey));
+            }catch(GeneralSecurityException ex){
+                log.warn("Ignoring signing key {}, it can't be decrypted with the current jwt.secret" , row.kid());
+            }
+        }
+
+        KeySet loaded = new KeySet(sequence , newestGeneration , Map.copyOf(publicKeys) , List.copyOf(signingKeys) , Map.of("keys" , List.copyOf(jwks)));
+        keySet.accumulateAndGet(loaded , (current , candidate) -> candidate.sequence() > current.sequence() ? candidate : current);
+        lastReload.set(clock.getAsLong());
+    }
+
+    /**
+     * Creates the key of the given generation, unless another instance has just created it.
+     */
+    private void createKey(long generation , long activatesAt){
+        try{
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(KEY_SIZE , random);
+            KeyPair keyPair = generator.generateKeyPair();
+
+            String kid = UUID.randomUUID().toString();
+            long expiresAt = activatesAt + rotationMilis + overlapMilis + TOKEN_LIFETIME_MILIS;
+
+            jdbcTemplate.update("INSERT INTO jwt_signing_keys (kid, public_key, private_key, generation, activates_at, expires_at) VALUES (?, ?, ?, ?, ?, ?)" ,
+                    kid , keyPair.getPublic().getEncoded() , encrypt(keyPair.getPrivate().getEncoded() , kid) , generation , activatesAt , expiresAt);
+
+            log.info("Created signing key {} active from {}" , kid , activatesAt);
+        }catch(DuplicateKeyException ex){
+            log.debug("Signing key of generation {} was created by another instance" , generation);
+        }catch(GeneralSecurityException ex){
+            throw new IllegalStateException("Unable to create a signing key" , ex);
+        }
+    }
+
+    /**
+     * Encrypts a private key, the key id is authenticated with it so an encrypted key can't be moved to another row.
+     *
+     * @return IV followed by the cipher text.
+     */
+    private byte[] encrypt(byte[] plain , String kid) throws GeneralSecurityException {
+        byte[] iv = new byte[GCM_IV_BYTES];
+        random.nextBytes(iv);
+
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE , encryptionKey , new GCMParameterSpec(GCM_TAG_BITS , iv));
+        cipher.updateAAD(kid.getBytes(StandardCharsets.UTF_8));
+
+        byte[] encrypted = cipher.doFinal(plain);
+
+        return ByteBuffer.allocate(iv.length + encrypted.length).put(iv).put(encrypted).array();
+    }
+
+    private byte[] decrypt(byte[] stored , String kid) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE , encryptionKey , new GCMParameterSpec(GCM_TAG_BITS , stored , 0 , GCM_IV_BYTES));
+        cipher.updateAAD(kid.getBytes(StandardCharsets.UTF_8));
+
+        return cipher.doFinal(stored , GCM_IV_BYTES , stored.length - GCM_IV_BYTES);
+    }
+
+    private static SecretKey deriveEncryptionKey(String secret){
+        try{
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update("jwt-signing-keys:".getBytes(StandardCharsets.UTF_8));
+
+            return new SecretKeySpec(digest.digest(secret.getBytes(StandardCharsets.UTF_8)) , "AES");
+        }catch(GeneralSecurityException ex){
+            throw new IllegalStateException("SHA-256 is not available" , ex);
+        }
+    }
+
+    private static Map<String , Object> toJwk(String kid , RSAPublicKey key){
+        Map<String , Object> jwk = new LinkedHashMap<>();
+        jwk.put("kty" , "RSA");
+        jwk.put("use" , "sig");
+        jwk.put("alg" , "RS256");
+        jwk.put("kid" , kid);
+        jwk.put("n" , BASE64_URL.encodeToString(unsigned(key.getModulus())));
+        jwk.put("e" , BASE64_URL.encodeToString(unsigned(key.getPublicExponent())));
+
+        return jwk;
+    }
+
+    /**
+     * Returns the big-endian bytes of a positive number without the sign byte, as JWK requires.
+     */
+    private static byte[] unsigned(BigInteger number){
+        byte[] bytes = number.toByteArray();
+
+        return bytes[0] == 0 && bytes.length > 1 ? Arrays.copyOfRange(bytes , 1 , bytes.length) : bytes;
+    }
+
+    /**
+     * Key able to sign tokens.
+     *
+     * @param kid Key id sent in the header of the tokens.
+     * @param privateKey Private key to sign with.
+     * @param activatesAt Epoch millis from which the key signs new tokens.
+     */
+    public record SigningKey(String kid , PrivateKey privateKey , long activatesAt){}
+
+    private record KeyRow(String kid , byte[] publicKey , byte[] privateKey , long generation , long activatesAt){}
+
+    /**
+     * Immutable snapshot of the keys, signing keys are sorted from the newest activation to the oldest.
+     *
+     * @param sequence Number of the reload that loaded it.
+     * @param newestGeneration Generation of the newest key, 0 if there are no keys.
+     */
+    private record KeySet(long sequence , long newestGeneration , Map<String , PublicKey> publicKeys , List<SigningKey> signingKeys ,
+                          Map<String , Object> jwks){}
+}
@@ -0,0 +1,190 @@
+package com.marin.UserService.security;
+
+import com.marin.UserService.service.UserDetailsCache;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Registry of the token epochs of the users, it's used to revoke every token of a user at once.
+ *
+ * Every token carries the epoch its user had when it was issued and a token is only accepted while its epoch is at least
+ * the current epoch of its user. Bumping the epoch of a user (on delete or logout-all) revokes all its tokens.
+ *
+ * The epochs are stored in the 'user_token_epochs' table so every instance of the API shares them, and each instance keeps
+ * a copy in memory that is refreshed every {@code jwt.epochs.refresh-millis} (default 5 seconds), so checking a token is
+ * a map lookup instead of a query. Only users whose epoch was ever bumped are stored, every other user has epoch 0.
+ *
+ * Deleted users get the epoch {@link #DELETED_EPOCH}, no token is issued with it and every token is older. When the
+ * epoch of a user changes the cached credentials of the user are evicted, also when the change comes from another instance.
+ */
+@Component
+public class TokenEpochRegistry implements SmartInitializingSingleton {
+
+    /**
+     * How far back the refresh looks for updates, it covers small clock differences between the instances.
+     */
+    private static final long REFRESH_OVERLAP_MILIS = 60000;
+
+    /**
+     * Epoch of the deleted users, it's never bumped again.
+     */
+    public static final int DELETED_EPOCH = Integer.MAX_VALUE;
+
+    private static final RowMapper<long[]> ROW_MAPPER = (rs , rowNum) -> new long[]{rs.getInt(1) , rs.getInt(2) , rs.getLong(3)};
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final UserDetailsCache userDetailsCache;
+
+    /**
+     * Epochs of the users by their id, readers never lock.
+     */
+    private final Map<Integer , Integer> epochs = new ConcurrentHashMap<>();
+
+    /**
+     * Latest update time read from the database.
+     */
+    private final AtomicLong lastUpdate = new AtomicLong();
+
+    @Autowired
+    public TokenEpochRegistry(JdbcTemplate jdbcTemplate , UserDetailsCache userDetailsCache){
+        this.jdbcTemplate = jdbcTemplate;
+        this.userDetailsCache = userDetailsCache;
+    }
+
+    /**
+     * Loads every epoch once all the beans are created, so the schema has already been initialized.
+     */
+    @Override
+    public void afterSingletonsInstantiated(){
+        merge(query(0));
+    }
+
+    /**
+     * Reads the epochs bumped by any instance since the last refresh.
+     */
+    @Scheduled(fixedDelayString = "${jwt.epochs.refresh-millis:5000}")
+    public void refresh(){
+        merge(query(lastUpdate.get() - REFRESH_OVERLAP_MILIS));
+    }
+
+    /**
+     * Returns the current epoch of a user, new tokens must be issued with this epoch.
+     *
+     * The epoch is read from the database instead of the copy in memory: another instance may have just bumped it, and a
+     * token issued with the previous epoch would stop working at the next refresh.
+     *
+     * @param userId ID of the user.
+     * @return Current epoch of the user, {@link #DELETED_EPOCH} if the user has been deleted.
+     */
+    public int currentEpoch(int userId){
+        merge(jdbcTemplate.query("SELECT user_id, epoch, updated_at FROM user_token_epochs WHERE user_id = ?" , ROW_MAPPER , userId));
+
+        return epochOf(userId);
+    }
+
+    /**
+     * Determines whether the epoch of a token is still valid for its user.
+     *
+     * @param token Verified token to check.
+     * @return True if the token has not been revoked, False otherwise.
+     */
+    public boolean isCurrent(VerifiedToken token){
+        return token.epoch() >= epochOf(token.id());
+    }
+
+    /**
+     * Bumps the epoch of a user revoking every token issued to it until now.
+     *
+     * @param userId ID of the user whose tokens are revoked.
+     */
+    public void bump(int userId){
+        long now = System.currentTimeMillis();
+
+        if(!increment(userId , now)){
+            try{
+                jdbcTemplate.update("INSERT INTO user_token_epochs (user_id, epoch, updated_at) VALUES (?, 1, ?)" , userId , now);
+            }catch(DuplicateKeyException ex){
+                // Other instance bumped the same user concurrently.
+                increment(userId , now);
+            }
+        }
+
+        Integer epoch = jdbcTemplate.queryForObject("SELECT epoch FROM user_token_epochs WHERE user_id = ?" , Integer.class , userId);
+
+        merge(List.of(new long[]{userId , epoch , now}));
+    }
+
+    /**
+     * Marks a user as deleted revoking every token issued to it, no new token can be issued to it either.
+     *
+     * @param userId ID of the deleted user.
+     */
+    public void markDeleted(int userId){
+        long now = System.currentTimeMillis();
+
+        if(!markDeleted(userId , now)){
+            try{
+                jdbcTemplate.update("INSERT INTO user_token_epochs (user_id, epoch, updated_at) VALUES (?, ?, ?)" , userId , DELETED_EPOCH , now);
+            }catch(DuplicateKeyException ex){
+                // Other instance bumped the same user concurrently.
+                markDeleted(userId , now);
+            }
+        }
+
+        merge(List.of(new long[]{userId , DELETED_EPOCH , now}));
+    }
+
+    private boolean increment(int userId , long now){
+        return jdbcTemplate.update("UPDATE user_token_epochs SET epoch = epoch + 1, updated_at = ? WHERE user_id = ? AND epoch < ?" ,
+                now , userId , DELETED_EPOCH) > 0;
+    }
+
+    private boolean markDeleted(int userId , long now){
+        return jdbcTemplate.update("UPDATE user_token_epochs SET epoch = ?, updated_at = ? WHERE user_id = ?" , DELETED_EPOCH , now , userId) > 0;
+    }
+
+    private List<long[]> query(long since){
+        return jdbcTemplate.query("SELECT user_id, epoch, updated_at FROM user_token_epochs WHERE updated_at >= ?" , ROW_MAPPER , since);
+    }
+
+    /**
+     * Merges the given rows (user id, epoch and update time), epochs never go back.
+     * Only the users whose epoch has changed are written and their cached credentials are evicted, so the cost of a
+     * refresh depends on the rows read and not on the number of users ever bumped.
+     */
+    private void merge(List<long[]> rows){
+        Set<Integer> changed = new HashSet<>();
+
+        for(long[] row : rows){
+            int userId = (int) row[0];
+            int epoch = (int) row[1];
+
+            // Most rows of a refresh were already merged by the previous one (see REFRESH_OVERLAP_MILIS).
+            if(epoch > epochOf(userId)){
+                epochs.merge(userId , epoch , Math::max);
+                changed.add(userId);
+            }
+
+            lastUpdate.accumulateAndGet(row[2] , Math::max);
+        }
+
+        userDetailsCache.evictUsers(changed);
+    }
+
+    private int epochOf(int userId){
+        return epochs.getOrDefault(userId , 0);
+    }
+}
@@ -0,0 +1,49 @@
+package com.marin.UserService.security;
+
+import io.jsonwebtoken.Claims;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Immutable view of a JWT token whose signature has already been verified.
+ *
+ * It is created by JwtUtil after parsing a token ONCE, so any component that needs the data of the token
+ * (subject, user id, roles, epoch or expiration) should read it from here instead of parsing the token again.
+ */
+public record VerifiedToken(
+        String subject ,
+        int id ,
+        List<String> roles ,
+        int epoch ,
+        Instant expiration
+) {
+
+    /**
+     * Creates a VerifiedToken using the claims of an already verified token.
+     *
+     * @param claims Claims of the verified token.
+     * @return VerifiedToken holding the data of the claims.
+     */
+    static VerifiedToken fromClaims(Claims claims){
+        List<?> rawRoles = claims.get("roles" , List.class);
+        List<String> roles = rawRoles == null ? List.of() : rawRoles.stream().map(String::valueOf).toList();
+        Integer epoch = claims.get("epoch" , Integer.class);
+
+        return new VerifiedToken(
+                claims.getSubject(),
+                claims.get("id" , Integer.class),
+                roles,
+                epoch == null ? 0 : epoch,
+                claims.getExpiration().toInstant());
+    }
+
+    /**
+     * Determines whether this token is expired or not.
+     *
+     * @return True if its expired, False otherwise
+     */
+    public boolean isExpired(){
+        return expiration.isBefore(Instant.now());
+    }
+}
@@ -0,0 +1,116 @@
+package com.marin.UserService.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of already verified tokens to avoid verifying the signature of the same token on every request.
+ *
+ * Tokens are stored by the SHA-256 digest of the raw token, so a hit only costs hashing the token and a lookup.
+ * Every entry expires at the expiration of its token, and the cache is bounded both by number of entries and by an
+ * estimation of the memory its entries use, so a flood of different tokens can't grow the heap.
+ */
+@Component
+public class VerifiedTokenCache {
+
+    /**
+     * Estimation of the bytes used by an entry without counting its subject and roles (key, value, dates and cache node).
+     */
+    private static final int BASE_ENTRY_BYTES = 256;
+
+    private final Cache<TokenDigest , VerifiedToken> cache;
+
+    @Autowired
+    public VerifiedTokenCache(@Value("${jwt.cache.max-entries:10000}") long maxEntries ,
+                              @Value("${jwt.cache.max-bytes:8388608}") long maxBytes ,
+                              MeterRegistry meterRegistry) {
+        // Every entry weighs at least maxBytes / maxEntries so the weight limit also caps the number of entries.
+        int minEntryWeight = (int) Math.max(1 , Math.min(Integer.MAX_VALUE , maxBytes / Math.max(1 , maxEntries)));
+
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((TokenDigest digest , VerifiedToken token) -> Math.max(minEntryWeight , estimateBytes(token)))
+                .expireAfter(new ExpireAtTokenExpiration())
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry , cache , "verifiedTokens");
+    }
+
+    /**
+     * Returns the verified token of the given raw token verifying it with the given verifier if it is not cached yet.
+     * Tokens that fail the verification are never cached.
+     *
+     * @param token Raw token to fetch.
+     * @param verifier Function that verifies the raw token.
+     * @return Verified token.
+     */
+    public VerifiedToken get(String token , Function<String , VerifiedToken> verifier){
+        return cache.get(TokenDigest.of(token) , digest -> verifier.apply(token));
+    }
+
+    /**
+     * Estimates the bytes used by an entry of the given token.
+     */
+    private static int estimateBytes(VerifiedToken token){
+        int bytes = BASE_ENTRY_BYTES + token.subject().length() * 2;
+
+        for(String role : token.roles()){
+            bytes += 48 + role.length() * 2;
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Key of the cache, it holds the SHA-256 digest of a raw token in four longs.
+     */
+    private record TokenDigest(long first , long second , long third , long fourth) {
+
+        static TokenDigest of(String token){
+            try{
+                byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+                ByteBuffer buffer = ByteBuffer.wrap(digest);
+
+                return new TokenDigest(buffer.getLong() , buffer.getLong() , buffer.getLong() , buffer.getLong());
+            }catch(NoSuchAlgorithmException ex){
+                throw new IllegalStateException("SHA-256 is not available" , ex);
+            }
+        }
+    }
+
+    /**
+     * Expires every entry at the expiration of its token, reads and updates never extend it.
+     */
+    private static class ExpireAtTokenExpiration implements Expiry<TokenDigest , VerifiedToken> {
+
+        @Override
+        public long expireAfterCreate(TokenDigest digest , VerifiedToken token , long currentTime){
+            return Math.max(0 , Duration.between(Instant.now() , token.expiration()).toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(TokenDigest digest , VerifiedToken token , long currentTime , long currentDuration){
+            return expireAfterCreate(digest , token , currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(TokenDigest digest , VerifiedToken token , long currentTime , long currentDuration){
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.marin.UserService.service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter of strings with its bits packed 64 per long.
+ *
+ * It answers whether an element might have been added (with a configurable false positive probability) or was
+ * definitely not added. Elements can't be removed, removing one would clear bits shared with other elements.
+ * Every operation is lock-free.
+ */
+class BloomFilter {
+
+    private static final int BITS_PER_WORD = Long.SIZE;
+
+    private final AtomicLongArray words;
+
+    private final int bits;
+
+    private final int hashes;
+
+    /**
+     * Creates a filter sized for the given number of elements.
+     *
+     * @param expectedElements Number of elements the filter is sized for.
+     * @param falsePositiveProbability Probability of a false positive once the filter holds the expected elements.
+     */
+    BloomFilter(long expectedElements , double falsePositiveProbability){
+        long elements = Math.max(1 , expectedElements);
+        double ln2 = Math.log(2);
+        long optimalBits = (long) Math.ceil(-elements * Math.log(falsePositiveProbability) / (ln2 * ln2));
+
+        this.bits = (int) Math.min(Integer.MAX_VALUE - BITS_PER_WORD , Math.max(BITS_PER_WORD , optimalBits));
+        this.hashes = (int) Math.max(1 , Math.round((double) bits / elements * ln2));
+        this.words = new AtomicLongArray((bits + BITS_PER_WORD - 1) / BITS_PER_WORD);
+    }
+
+    void add(String element){
+        long hash = hash(element);
+
+        for(int i = 0; i < hashes; i++){
+            int index = index(hash , i);
+            int word = index / BITS_PER_WORD;
+            long mask = 1L << (index % BITS_PER_WORD);
+
+            while(true){
+                long current = words.get(word);
+
+                if((current & mask) != 0 || words.compareAndSet(word , current , current | mask)){
+                    break;
+                }
+            }
+        }
+    }
+
+    boolean mightContain(String element){
+        long hash = hash(element);
+
+        for(int i = 0; i < hashes; i++){
+            int index = index(hash , i);
+
+            if((words.get(index / BITS_PER_WORD) & (1L << (index % BITS_PER_WORD))) == 0){
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Memory used by the bits in bytes.
+     */
+    long sizeInBytes(){
+        return (long) words.length() * Long.BYTES;
+    }
+
+    /**
+     * Index of the i-th hash using double hashing over the two halves of a 64-bit hash.
+     */
+    private int index(long hash , int i){
+        int combined = (int) hash + i * (int) (hash >>> 32);
+
+        return Math.floorMod(combined , bits);
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the characters finished with the MurmurHash3 mixer to spread the bits.
+     */
+    private static long hash(String element){
+        long hash = 0xcbf29ce484222325L;
+
+        for(int i = 0; i < element.length(); i++){
+            hash ^= element.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+
+        return hash;
+    }
+}
@@ -0,0 +1,128 @@
+package com.marin.UserService.service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Compact identifier of a rate limited client inside an endpoint group.
+ *
+ * The key includes the tier of the client, so a client whose role changes gets a bucket of its new limit instead of
+ * keeping the bucket it had until it's evicted.
+ *
+ * IP addresses are stored as a 128-bit number split in two primitive longs instead of Strings, IPv4 addresses are stored
+ * in their IPv4-mapped IPv6 form (::ffff:a.b.c.d) so both families share the same representation.
+ * Authenticated users are stored by their ID under a prefix of the multicast range, which is never a remote address.
+ */
+public record BucketKey(EndpointGroup group , RateLimit limit , long high , long low) {
+
+    /**
+     * Prefix of the IPv4-mapped IPv6 addresses in the lower 64 bits.
+     */
+    private static final long IPV4_MAPPED_PREFIX = 0x0000_FFFF_0000_0000L;
+
+    /**
+     * Upper 64 bits of the keys of authenticated users.
+     */
+    private static final long USER_PREFIX = 0xFFFF_FFFF_FFFF_FFFEL;
+
+    /**
+     * Upper 64 bits of the keys of remote addresses that are not literal IPs.
+     */
+    private static final long HASHED_PREFIX = 0xFFFF_FFFF_FFFF_FFFFL;
+
+    /**
+     * Creates the key of the authenticated user with the given ID.
+     *
+     * @param group Endpoint group of the request.
+     * @param limit Limit of the tier of the user.
+     * @param userId ID of the user.
+     * @return Key of the user.
+     */
+    public static BucketKey ofUser(EndpointGroup group , RateLimit limit , int userId){
+        return new BucketKey(group , limit , USER_PREFIX , userId);
+    }
+
+    /**
+     * Creates the key of the given IP address.
+     * The address MUST be a literal IP address as the ones returned by HttpServletRequest.getRemoteAddr(), as anything
+     * else is only hashed into a key and could collide with other values.
+     * Anonymous clients always have the limit of the CLIENT tier.
+     *
+     * @param group Endpoint group of the request.
+     * @param address Literal IPv4 or IPv6 address.
+     * @return Key of the address.
+     */
+    public static BucketKey ofAddress(EndpointGroup group , String address){
+        long ipv4 = parseIpv4(address);
+
+        if(ipv4 >= 0){
+            return new BucketKey(group , RateLimit.CLIENT , 0 , IPV4_MAPPED_PREFIX | ipv4);
+        }
+
+        if(address.indexOf(':') >= 0){
+            try{
+                // Literals with ':' are always parsed as IPv6 addresses, no name lookup is done.
+                byte[] bytes = InetAddress.getByName(address).getAddress();
+
+                // IPv4-mapped literals are resolved as 4 bytes IPv4 addresses
+                if(bytes.length == 4){
+                    return new BucketKey(group , RateLimit.CLIENT , 0 , IPV4_MAPPED_PREFIX | toLong(bytes , 0 , 4));
+                }
+
+                return new BucketKey(group , RateLimit.CLIENT , toLong(bytes , 0 , 8) , toLong(bytes , 8 , 8));
+            }catch(UnknownHostException ex){
+                // Not a valid literal, falls back to the hash of the address
+            }
+        }
+
+        return new BucketKey(group , RateLimit.CLIENT , HASHED_PREFIX , address.hashCode());
+    }
+
+    /**
+     * Parses a dotted IPv4 address into an unsigned 32-bit number.
+     *
+     * @return The address as a number or -1 if it is not a valid IPv4 address.
+     */
+    private static long parseIpv4(String address){
+        long result = 0;
+        int octets = 0;
+        int value = -1;
+
+        for(int i = 0 ; i < address.length() ; i++){
+            char c = address.charAt(i);
+
+            if(c >= '0' && c <= '9'){
+                value = (value < 0 ? 0 : value * 10) + (c - '0');
+
+                if(value > 255){
+                    return -1;
+                }
+            }else if(c == '.' && value >= 0 && octets < 3){
+                result = (result << 8) | value;
+                octets++;
+                value = -1;
+            }else{
+                return -1;
+            }
+        }
+
+        if(value < 0 || octets != 3){
+            return -1;
+        }
+
+        return (result << 8) | value;
+    }
+
+    /**
+     * Reads the given number of bytes of an address as an unsigned big-endian number.
+     */
+    private static long toLong(byte[] bytes , int offset , int length){
+        long result = 0;
+
+        for(int i = offset ; i < offset + length ; i++){
+            result = (result << 8) | (bytes[i] & 0xFF);
+        }
+
+        return result;
+    }
+}
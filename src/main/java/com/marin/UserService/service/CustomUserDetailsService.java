@@ -1,49 +1,105 @@
 package com.marin.UserService.service;
 
-import com.marin.UserService.entities.Role;
-import com.marin.UserService.entities.User;
+import com.marin.UserService.datasource.ReadYourWritesTracker;
+import com.marin.UserService.repository.UserCredentialsView;
 import com.marin.UserService.repository.UserRepository;
+import com.marin.UserService.security.AuthenticatedUser;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Service for managing UserDetails
  * This class encapsulates the logic of wrapping Users in UserDetails for usage in authentication.
+ *
+ * It also stores the upgraded password hashes Spring Security creates on login when the stored hash uses an outdated encoding.
  */
 @Service
-public class CustomUserDetailsService implements UserDetailsService {
+public class CustomUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
 
-    @Autowired
     private final UserRepository userRepository;
 
-    public CustomUserDetailsService(UserRepository userRepository) {
+    private final UserDetailsCache userDetailsCache;
+
+    private final RoleService roleService;
+
+    private final ReadYourWritesTracker readYourWrites;
+
+    @Autowired
+    public CustomUserDetailsService(UserRepository userRepository, UserDetailsCache userDetailsCache, RoleService roleService,
+                                    ReadYourWritesTracker readYourWrites) {
         this.userRepository = userRepository;
+        this.userDetailsCache = userDetailsCache;
+        this.roleService = roleService;
+        this.readYourWrites = readYourWrites;
     }
 
     /**
      * Returns the User Details of a registered User using its username.
-     * This User Details is created using data of an User stored in database.
+     * This User Details is created using data of an User stored in database and it's cached to avoid querying the database
+     * every time the same user is authenticated.
+     *
+     * The returned User Details is an AuthenticatedUser, so the ID of the user is available once it's authenticated.
      *
      * @return UserDetails Details of the user if found.
      * @throws UsernameNotFoundException If the username doesn't exist
      */
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        User user = userRepository.findByUsername(username).orElseThrow(() -> new UsernameNotFoundException("User not found"));
+        return userDetailsCache.get(username , this::loadFromDatabase);
+    }
+
+    /**
+     * Replaces the stored password hash of the given user with the upgraded hash and evicts its cached credentials.
+     * This is called by Spring Security after a successful login whose stored hash must be upgraded.
+     *
+     * @return UserDetails Details of the user with the upgraded hash.
+     */
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        userRepository.updatePassword(user.getUsername() , newPassword);
+        userDetailsCache.evict(user.getUsername());
+
+        if(user instanceof AuthenticatedUser authenticatedUser){
+            return authenticatedUser.withPassword(newPassword);
+        }
+
+        return org.springframework.security.core.userdetails.User.withUserDetails(user).password(newPassword).build();
+    }
+
+    /**
+     * Loads the User Details of a registered User directly from the database.
+     * The authorities of the user are taken from the role catalog, so they are shared between all the users.
+     *
+     * The query is read-only so it goes to a replica, unless the user has just registered and the replica may not have it yet.
+     *
+     * @return UserDetails Details of the user if found.
+     * @throws UsernameNotFoundException If the username doesn't exist
+     */
+    private AuthenticatedUser loadFromDatabase(String username) throws UsernameNotFoundException {
+        List<UserCredentialsView> rows = readYourWrites.withWritesOf(username , () -> userRepository.findCredentialsByUsername(username));
+
+        if(rows.isEmpty()){
+            throw new UsernameNotFoundException("User not found");
+        }
 
         ArrayList<GrantedAuthority> grantedAuthorities = new ArrayList<>();
 
-        for(Role r : user.getRoles()){
-            grantedAuthorities.add(new SimpleGrantedAuthority("ROLE_" + r.getName()));
+        for(UserCredentialsView row : rows){
+            if(row.getRoleName() != null){
+                grantedAuthorities.add(roleService.authorityOf(row.getRoleName()));
+            }
         }
 
-        return new org.springframework.security.core.userdetails.User(user.getUsername() , user.getPassword() , grantedAuthorities);
+        UserCredentialsView user = rows.get(0);
+
+        return new AuthenticatedUser(user.getId() , user.getUsername() , user.getPassword() , grantedAuthorities);
     }
 }
@@ -0,0 +1,40 @@
+package com.marin.UserService.service;
+
+/**
+ * Groups of endpoints that are rate limited independently, a client has a different bucket of tokens for every group.
+ */
+public enum EndpointGroup {
+
+    AUTH("/auth"),
+
+    USERS("/users");
+
+    /**
+     * Path prefix of the endpoints of this group.
+     */
+    private final String prefix;
+
+    EndpointGroup(String prefix) {
+        this.prefix = prefix;
+    }
+
+    /**
+     * Returns the group of the endpoint with the given path.
+     *
+     * @param path Path of the endpoint without the context path.
+     * @return Group of the endpoint, USERS if the path doesn't belong to any group.
+     */
+    public static EndpointGroup resolve(String path){
+        for(EndpointGroup group : values()){
+            if(path.equals(group.prefix) || path.startsWith(group.prefix + "/")){
+                return group;
+            }
+        }
+
+        return USERS;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+}
@@ -0,0 +1,225 @@
+package com.marin.UserService.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Rate limit backend shared by every instance of this API through the 'rate_limit_buckets' table.
+ *
+ * Each client has a counter of consumed tokens per time window (windows are aligned to the epoch so every instance agrees on them).
+ * To avoid hitting the database on every request each instance leases a batch of tokens with a compare-and-swap update and
+ * serves them locally, once the database has no tokens left for the window the client is rejected locally until the next window.
+ * A lease takes {@code rate-limit.jdbc.batch-percent} of the capacity of the limit (default 10%, at least one token), so a
+ * client costs about ten round-trips per window whatever its limit is. The remaining requests reported to the client are
+ * the tokens left in the database when this instance last leased plus the tokens of its lease not used yet.
+ *
+ * Counters of past windows are removed by a scheduled task every 5 minutes.
+ *
+ * NOTE: Tokens leased by an instance but not used are lost for the other instances until the next window, so the batch size
+ * trades database round-trips against precision of the limit: a client spread over N instances may be rejected up to
+ * (N - 1) leases before reaching its limit, but it's never accepted over it.
+ */
+@Component
+@ConditionalOnProperty(name = "rate-limit.backend" , havingValue = "jdbc")
+public class JdbcRateLimitBackend implements RateLimitBackend {
+
+    /**
+     * Number of times a lease is retried when other instance updated the same counter concurrently.
+     */
+    private static final int MAX_LEASE_ATTEMPTS = 5;
+
+    /**
+     * Determines how often the counters of past windows are removed from the database.
+     */
+    private static final long CLEANUP_INTERVAL_MILIS = 300000;
+
+    /**
+     * Longest period of all the limits, counters are kept for at least two of them.
+     */
+    private static final long MAX_PERIOD_MILIS = Arrays.stream(RateLimit.values())
+            .mapToLong(limit -> limit.getPeriod().toMillis())
+            .max()
+            .orElse(0);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final long batchPercent;
+
+    private final Cache<BucketKey , Lease> leases;
+
+    private final LongSupplier clock;
+
+    @Autowired
+    public JdbcRateLimitBackend(JdbcTemplate jdbcTemplate ,
+                                @Value("${rate-limit.jdbc.batch-percent:10}") long batchPercent ,
+                                @Value("${rate-limit.max-buckets:100000}") long maxBuckets ,
+                                MeterRegistry meterRegistry) {
+        this(jdbcTemplate , batchPercent , maxBuckets , meterRegistry , System::currentTimeMillis);
+    }
+
+    /**
+     * Creates a backend that reads the current time in milliseconds from the given clock.
+     */
+    JdbcRateLimitBackend(JdbcTemplate jdbcTemplate , long batchPercent , long maxBuckets , MeterRegistry meterRegistry , LongSupplier clock) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.clock = clock;
+        this.batchPercent = Math.min(100 , Math.max(0 , batchPercent));
+        this.leases = Caffeine.newBuilder()
+                .maximumSize(maxBuckets)
+                .expireAfterAccess(Duration.ofMinutes(5))
+                .build();
+
+        Gauge.builder("ratelimit.buckets" , leases , Cache::estimatedSize)
+                .description("Number of live rate limit leases")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public RateLimitProbe tryConsume(BucketKey key){
+        RateLimit limit = key.limit();
+        long periodMilis = limit.getPeriod().toMillis();
+        long now = clock.getAsLong();
+        long window = now - (now % periodMilis);
+        long nanosToNextWindow = Duration.ofMillis(window + periodMilis - now).toNanos();
+
+        Lease lease = leases.get(key , newKey -> new Lease());
+        lease.lock.lock();
+
+        try{
+            if(lease.window != window){
+                lease.window = window;
+                lease.available = 0;
+                lease.sharedLeft = 0;
+                lease.exhausted = false;
+            }
+
+            if(lease.available == 0 && !lease.exhausted){
+                Grant grant = acquire(toDatabaseKey(key) , window , limit.getCapacity());
+
+                lease.available = grant.tokens();
+                lease.sharedLeft = grant.left();
+                lease.exhausted = grant.tokens() == 0;
+            }
+
+            if(lease.available > 0){
+                lease.available--;
+                return new RateLimitProbe(true , lease.available + lease.sharedLeft , 0);
+            }
+
+            return new RateLimitProbe(false , 0 , nanosToNextWindow);
+        }finally{
+            lease.lock.unlock();
+        }
+    }
+
+    /**
+     * Leases up to a batch of tokens of the given window from the database.
+     *
+     * @return Tokens leased, with zero tokens if the window has no tokens left.
+     */
+    private Grant acquire(String key , long window , long capacity){
+        long batchSize = Math.max(1 , capacity * batchPercent / 100);
+
+        for(int attempt = 0 ; attempt < MAX_LEASE_ATTEMPTS ; attempt++){
+            List<long[]> rows = jdbcTemplate.query(
+                    "SELECT window_start, consumed FROM rate_limit_buckets WHERE bucket_key = ?",
+                    (rs , rowNum) -> new long[]{rs.getLong(1) , rs.getLong(2)},
+                    key);
+
+            if(rows.isEmpty()){
+                long take = Math.min(batchSize , capacity);
+
+                try{
+                    jdbcTemplate.update("INSERT INTO rate_limit_buckets (bucket_key, window_start, consumed) VALUES (?, ?, ?)" , key , window , take);
+                    return new Grant(take , capacity - take);
+                }catch(DuplicateKeyException ex){
+                    continue;
+                }
+            }
+
+            long storedWindow = rows.get(0)[0];
+            long storedConsumed = rows.get(0)[1];
+
+            // A window ahead of ours means this instance clock is behind, the client is rejected to stay on the safe side.
+            if(storedWindow > window){
+                return Grant.NONE;
+            }
+
+            long consumed = storedWindow == window ? storedConsumed : 0;
+            long take = Math.min(batchSize , capacity - consumed);
+
+            if(take <= 0){
+                return Grant.NONE;
+            }
+
+            int updated = jdbcTemplate.update(
+                    "UPDATE rate_limit_buckets SET window_start = ?, consumed = ? WHERE bucket_key = ? AND window_start = ? AND consumed = ?",
+                    window , consumed + take , key , storedWindow , storedConsumed);
+
+            if(updated == 1){
+                return new Grant(take , capacity - consumed - take);
+            }
+        }
+
+        return Grant.NONE;
+    }
+
+    /**
+     * Removes the counters of past windows, every instance runs it but deleting rows already deleted is harmless.
+     */
+    @Scheduled(fixedDelay = CLEANUP_INTERVAL_MILIS , initialDelay = CLEANUP_INTERVAL_MILIS)
+    public void removeExpiredCounters(){
+        long now = clock.getAsLong();
+
+        jdbcTemplate.update("DELETE FROM rate_limit_buckets WHERE window_start < ?" , now - 2 * Math.max(MAX_PERIOD_MILIS , CLEANUP_INTERVAL_MILIS));
+    }
+
+    private String toDatabaseKey(BucketKey key){
+        return key.group().name() + ":" + key.limit().name() + ":" + Long.toHexString(key.high()) + ":" + Long.toHexString(key.low());
+    }
+
+    /**
+     * Tokens leased by this instance for a client in the current window.
+     */
+    private static class Lease {
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private long window;
+
+        private long available;
+
+        /**
+         * Tokens left in the database when this instance leased the last time.
+         */
+        private long sharedLeft;
+
+        private boolean exhausted;
+    }
+
+    /**
+     * Result of a lease.
+     *
+     * @param tokens Tokens leased to this instance.
+     * @param left Tokens left in the database after the lease.
+     */
+    private record Grant(long tokens , long left){
+
+        private static final Grant NONE = new Grant(0 , 0);
+    }
+}
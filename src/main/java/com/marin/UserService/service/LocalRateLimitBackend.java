@@ -0,0 +1,151 @@
+package com.marin.UserService.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.ConsumptionProbe;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rate limit backend that keeps the buckets of the clients in the memory of this instance.
+ *
+ * Buckets are evicted once they have been idle for a while (they would be full again anyway) and the number of buckets
+ * is capped, so clients that never come back don't stay in memory.
+ *
+ * The bytes of every bucket (its key and bucket) are measured once per limit at startup from the memory allocated to
+ * create them, and the bytes of the live buckets are kept as they are created and evicted.
+ */
+@Component
+@ConditionalOnProperty(name = "rate-limit.backend" , havingValue = "local" , matchIfMissing = true)
+public class LocalRateLimitBackend implements RateLimitBackend {
+
+    /**
+     * Buckets can't be evicted before their refill period, otherwise an idle client would get a full bucket earlier.
+     */
+    private static final long MIN_IDLE_SECONDS = 60;
+
+    /**
+     * Estimation of the bytes of the cache node holding every bucket and of its entry in the map of the cache.
+     */
+    private static final long CACHE_ENTRY_BYTES = 96;
+
+    /**
+     * Bytes of a key and its bucket when the allocated memory can't be measured.
+     */
+    private static final long FALLBACK_BUCKET_BYTES = 224;
+
+    /**
+     * Number of buckets created to measure the bytes of every limit.
+     */
+    private static final int MEASURED_BUCKETS = 256;
+
+    private final Cache<BucketKey , Bucket> cache;
+
+    /**
+     * Bytes of every bucket by its limit, counting its key and the cache entry holding them.
+     */
+    private final Map<RateLimit , Long> bucketBytes = new EnumMap<>(RateLimit.class);
+
+    /**
+     * Bytes of the live buckets.
+     */
+    private final AtomicLong liveBytes = new AtomicLong();
+
+    @Autowired
+    public LocalRateLimitBackend(@Value("${rate-limit.max-buckets:100000}") long maxBuckets ,
+                                 @Value("${rate-limit.idle-seconds:300}") long idleSeconds ,
+                                 MeterRegistry meterRegistry) {
+        for(RateLimit limit : RateLimit.values()){
+            bucketBytes.put(limit , measureBucketBytes(limit) + CACHE_ENTRY_BYTES);
+        }
+
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxBuckets)
+                .expireAfterAccess(Duration.ofSeconds(Math.max(MIN_IDLE_SECONDS , idleSeconds)))
+                // Buckets are never removed explicitly nor replaced, every removal is an eviction.
+                .evictionListener((BucketKey key , Bucket bucket , RemovalCause cause) -> liveBytes.addAndGet(-bucketBytes.get(key.limit())))
+                .build();
+
+        Gauge.builder("ratelimit.buckets" , cache , Cache::estimatedSize)
+                .description("Number of live rate limit buckets")
+                .register(meterRegistry);
+
+        Gauge.builder("ratelimit.buckets.memory" , liveBytes , AtomicLong::get)
+                .description("Estimated bytes used by the live rate limit buckets")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+
+        Gauge.builder("ratelimit.bucket.size" , this , LocalRateLimitBackend::averageBucketBytes)
+                .description("Estimated bytes used by every live rate limit bucket on average")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public RateLimitProbe tryConsume(BucketKey key){
+        Bucket bucket = cache.get(key , newKey -> {
+            liveBytes.addAndGet(bucketBytes.get(newKey.limit()));
+            return newBucket(newKey.limit());
+        });
+        ConsumptionProbe probe = bucket.tryConsumeAndReturnRemaining(1);
+
+        return new RateLimitProbe(probe.isConsumed() , probe.getRemainingTokens() , probe.getNanosToWaitForRefill());
+    }
+
+    /**
+     * Returns the bytes of the live buckets divided by their number, 0 if there are no buckets.
+     */
+    private double averageBucketBytes(){
+        long buckets = cache.estimatedSize();
+
+        return buckets == 0 ? 0 : (double) liveBytes.get() / buckets;
+    }
+
+    private static Bucket newBucket(RateLimit limit){
+        return Bucket.builder().addLimit(limit.getLimit()).build();
+    }
+
+    /**
+     * Measures the bytes of a key and a bucket of the given limit from the memory allocated by this thread to create
+     * them, it includes the short-lived objects of the builder so it's an upper bound.
+     */
+    static long measureBucketBytes(RateLimit limit){
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+        if(!(threads instanceof com.sun.management.ThreadMXBean allocations)
+                || !allocations.isThreadAllocatedMemorySupported()
+                || !allocations.isThreadAllocatedMemoryEnabled()){
+            return FALLBACK_BUCKET_BYTES;
+        }
+
+        // The first bucket loads the classes of the builder, which would be counted otherwise.
+        newBucket(limit);
+
+        Object[] created = new Object[MEASURED_BUCKETS * 2];
+        long before = allocations.getCurrentThreadAllocatedBytes();
+
+        for(int i = 0 ; i < MEASURED_BUCKETS ; i++){
+            created[2 * i] = new BucketKey(EndpointGroup.USERS , limit , i , i);
+            created[2 * i + 1] = newBucket(limit);
+        }
+
+        long allocated = allocations.getCurrentThreadAllocatedBytes() - before;
+        Reference.reachabilityFence(created);
+
+        return allocated / MEASURED_BUCKETS;
+    }
+}
@@ -4,33 +4,59 @@ import io.github.bucket4j.Bandwidth;
 import io.github.bucket4j.Refill;
 
 import java.time.Duration;
+import java.util.List;
 
 /**
  * Enum for establishing the bandwidth (limit of requests and its refill period) of the different types of clients of the API
  */
 public enum RateLimit {
 
-    CLIENT {
-        @Override
-        public Bandwidth getLimit(){
-            return Bandwidth.classic(3 , Refill.intervally(3 , Duration.ofMinutes(1)));
-        }
-    },
+    CLIENT(3 , Duration.ofMinutes(1)),
 
-    USER {
-        @Override
-        public Bandwidth getLimit() {
-            return Bandwidth.classic(10 , Refill.intervally(10 , Duration.ofMinutes(1)));
-        }
-    };
+    USER(10 , Duration.ofMinutes(1)),
+
+    ADMIN(120 , Duration.ofMinutes(1));
+
+    /**
+     * Number of requests allowed every period.
+     */
+    private final long capacity;
+
+    /**
+     * Period after which all the requests are refilled.
+     */
+    private final Duration period;
+
+    RateLimit(long capacity , Duration period) {
+        this.capacity = capacity;
+        this.period = period;
+    }
 
-    public static RateLimit resolveClient(int type){
-        if(type == 0){
+    /**
+     * Returns the limit of a client based on its roles.
+     *
+     * @param roles Roles of the authenticated client, null if the client is not authenticated.
+     * @return CLIENT for non-authenticated clients, ADMIN for admins and USER for any other authenticated client.
+     */
+    public static RateLimit resolveClient(List<String> roles){
+        if(roles == null){
             return CLIENT;
+        }else if(roles.contains("ROLE_ADMIN")){
+            return ADMIN;
         }else{
             return USER;
         }
     }
 
-    public abstract Bandwidth getLimit();
+    public Bandwidth getLimit(){
+        return Bandwidth.classic(capacity , Refill.intervally(capacity , period));
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    public Duration getPeriod() {
+        return period;
+    }
 }
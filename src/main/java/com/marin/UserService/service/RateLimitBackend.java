@@ -0,0 +1,18 @@
+package com.marin.UserService.service;
+
+/**
+ * Storage of the request tokens of the rate limited clients.
+ *
+ * The backend to use is selected with the property 'rate-limit.backend':
+ * 'local' (default) keeps the buckets in the memory of this instance and 'jdbc' shares them between all the instances through the database.
+ */
+public interface RateLimitBackend {
+
+    /**
+     * Tries to consume one request token of the client identified by the given key, under the limit of the key.
+     *
+     * @param key Key of the client.
+     * @return Result of the consumption.
+     */
+    RateLimitProbe tryConsume(BucketKey key);
+}
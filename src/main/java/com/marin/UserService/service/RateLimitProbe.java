@@ -0,0 +1,14 @@
+package com.marin.UserService.service;
+
+/**
+ * Result of trying to consume a request token of a client.
+ *
+ * @param consumed True if the client had a token left and the request can pass.
+ * @param remainingTokens Tokens left to the client after this request.
+ * @param nanosToWaitForRefill Nanoseconds the client must wait to get a new token, zero if the request was consumed.
+ */
+public record RateLimitProbe(
+        boolean consumed ,
+        long remainingTokens ,
+        long nanosToWaitForRefill
+) { }
@@ -1,30 +1,76 @@
 package com.marin.UserService.service;
 
-import io.github.bucket4j.Bucket;
+import com.marin.UserService.security.VerifiedToken;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.EnumMap;
+import java.util.Locale;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Service for managing the clients requests counts using their IPs as identifiers.
+ * Service for managing the clients requests counts.
+ *
+ * Non-authenticated clients and every request to the /auth endpoints are identified by their IPs and limited as CLIENT,
+ * so brute-force attacks can't be spread across accounts. Authenticated clients are identified by the ID of their token
+ * and limited by their tier (USER or ADMIN). Every endpoint group has its own bucket of tokens.
+ *
+ * The tokens of the clients are kept by the configured RateLimitBackend.
+ *
+ * Every decision is timed in the "ratelimit.requests" timer tagged by endpoint group and result, so its count gives
+ * the accepted and rejected requests and its latency the cost of the backend.
  */
 @Service
 public class RateLimiterService {
 
-    private final Map<String , Bucket> cache = new ConcurrentHashMap<>();
+    private final RateLimitBackend backend;
 
-    public Bucket resolveBucket(String identifier){
-        return cache.computeIfAbsent(identifier , this::newBucket);
+    private final Map<EndpointGroup , Timer> acceptedTimers = new EnumMap<>(EndpointGroup.class);
+
+    private final Map<EndpointGroup , Timer> rejectedTimers = new EnumMap<>(EndpointGroup.class);
+
+    @Autowired
+    public RateLimiterService(RateLimitBackend backend , MeterRegistry meterRegistry) {
+        this.backend = backend;
+
+        for(EndpointGroup group : EndpointGroup.values()){
+            acceptedTimers.put(group , requestTimer(group , "accepted" , meterRegistry));
+            rejectedTimers.put(group , requestTimer(group , "rejected" , meterRegistry));
+        }
+    }
+
+    private static Timer requestTimer(EndpointGroup group , String result , MeterRegistry meterRegistry){
+        return Timer.builder("ratelimit.requests")
+                .description("Rate limit decisions and the time spent taking them")
+                .tag("group" , group.name().toLowerCase(Locale.ROOT))
+                .tag("result" , result)
+                .register(meterRegistry);
     }
 
     /**
-     * Returns a bucket of the client identified by its ID
+     * Tries to consume a request token of a client in the given endpoint group.
      *
-     * @return Bucket of tokens of the client
+     * @param group Endpoint group of the request.
+     * @param remoteAddress IP address of the client.
+     * @param token Verified token of the client, null if the client is not authenticated.
+     * @return Result of the consumption
      */
-    private Bucket newBucket(String identifier){
+    public RateLimitProbe tryConsume(EndpointGroup group , String remoteAddress , VerifiedToken token){
+        long start = System.nanoTime();
+        RateLimitProbe probe;
+
+        if(group == EndpointGroup.AUTH || token == null){
+            probe = backend.tryConsume(BucketKey.ofAddress(group , remoteAddress));
+        }else{
+            probe = backend.tryConsume(BucketKey.ofUser(group , RateLimit.resolveClient(token.roles()) , token.id()));
+        }
+
+        Timer timer = probe.consumed() ? acceptedTimers.get(group) : rejectedTimers.get(group);
+        timer.record(System.nanoTime() - start , TimeUnit.NANOSECONDS);
 
-        return Bucket.builder().addLimit(RateLimit.CLIENT.getLimit()).build();
+        return probe;
     }
 }
@@ -1,7 +1,20 @@
 package com.marin.UserService.service;
 
+import com.marin.UserService.entities.Role;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Collection;
+
 /**
  * Interface for RoleService operations
  */
 public interface RoleService {
+
+    Role findRole(String name);
+
+    GrantedAuthority authorityOf(String roleName);
+
+    Collection<Role> fetchAllRoles();
+
+    void refreshRoles();
 }
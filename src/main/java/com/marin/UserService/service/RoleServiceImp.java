@@ -1,17 +1,134 @@
 package com.marin.UserService.service;
 
+import com.marin.UserService.entities.Role;
 import com.marin.UserService.repository.RoleRepository;
+import org.springframework.beans.factory.SmartInitializingSingleton;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
 
 /**
  * Implementation of the role service for managing operations of the role.
+ *
+ * Roles barely change, so they are loaded once at startup into an immutable catalog and the same Role and GrantedAuthority
+ * instances are shared by all the users instead of fetching them from the database every time.
+ * The catalog MUST be refreshed with refreshRoles() whenever the roles are changed in the database.
+ *
+ * The catalog is always read from the primary database: the roles are seeded there by schema.sql and a replica of a
+ * fresh deployment may not have them yet.
  */
 @Service
-public class RoleServiceImp implements RoleService{
+public class RoleServiceImp implements RoleService , SmartInitializingSingleton {
+
+    private final RoleRepository roleRepository;
+
+    private final UserDetailsCache userDetailsCache;
+
+    /**
+     * Read-write transactions, so the reads of the catalog are routed to the primary.
+     */
+    private final TransactionTemplate transactionTemplate;
+
+    private volatile Catalog catalog = new Catalog(Map.of() , Map.of());
 
     @Autowired
-    private RoleRepository roleRepository;
+    public RoleServiceImp(RoleRepository roleRepository , UserDetailsCache userDetailsCache , PlatformTransactionManager transactionManager) {
+        this.roleRepository = roleRepository;
+        this.userDetailsCache = userDetailsCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Loads the catalog once all the beans are created, so the schema has already been initialized.
+     */
+    @Override
+    public void afterSingletonsInstantiated(){
+        loadRoles();
+    }
+
+    /**
+     * Loads the catalog of roles from the primary database.
+     */
+    public void loadRoles(){
+        Map<String , Role> roles = new HashMap<>();
+        Map<String , GrantedAuthority> authorities = new HashMap<>();
+
+        for(Role role : transactionTemplate.execute(status -> roleRepository.findAll())){
+            String name = normalize(role.getName());
+
+            roles.put(name , role);
+            authorities.put(name , new SimpleGrantedAuthority("ROLE_" + name));
+        }
+
+        catalog = new Catalog(Map.copyOf(roles) , Map.copyOf(authorities));
+    }
+
+    /**
+     * Returns the role with the given name from the catalog, the name is case-insensitive.
+     * The returned role is shared, so it MUST NOT be modified.
+     *
+     * @throws NoSuchElementException If no role with such name exists.
+     * @return Role with the given name.
+     */
+    @Override
+    public Role findRole(String name) {
+        Role role = catalog.roles().get(normalize(name));
+
+        if(role == null){
+            throw new NoSuchElementException("No role with such name: " + name);
+        }
+
+        return role;
+    }
+
+    /**
+     * Returns the shared authority of the role with the given name, the name is case-insensitive.
+     * Roles added to the database after the catalog was loaded get a new authority until the catalog is refreshed.
+     *
+     * @return Authority of the role.
+     */
+    @Override
+    public GrantedAuthority authorityOf(String roleName) {
+        String name = normalize(roleName);
+        GrantedAuthority authority = catalog.authorities().get(name);
+
+        return authority != null ? authority : new SimpleGrantedAuthority("ROLE_" + name);
+    }
+
+    /**
+     * Returns all the roles of the catalog.
+     *
+     * @return Roles of the catalog.
+     */
+    @Override
+    public Collection<Role> fetchAllRoles() {
+        return catalog.roles().values();
+    }
+
+    /**
+     * Reloads the catalog from the database and evicts all the cached users as their authorities may have changed.
+     */
+    @Override
+    public void refreshRoles() {
+        loadRoles();
+        userDetailsCache.evictAll();
+    }
 
+    private String normalize(String name){
+        return name.toUpperCase(Locale.ROOT);
+    }
 
+    /**
+     * Immutable snapshot of the roles of the database, indexed by their name in upper case.
+     */
+    private record Catalog(Map<String , Role> roles , Map<String , GrantedAuthority> authorities) { }
 }
@@ -0,0 +1,104 @@
+package com.marin.UserService.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.marin.UserService.security.AuthenticatedUser;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Size bounded cache of UserDetails using their username as key.
+ * Entries expire after a fixed time since they were loaded and MUST be evicted explicitly whenever a user is deleted or its roles change.
+ *
+ * Hit, miss and eviction stats are exported as the 'userDetails' cache metrics.
+ */
+@Component
+public class UserDetailsCache {
+
+    private final Cache<String , AuthenticatedUser> cache;
+
+    @Autowired
+    public UserDetailsCache(@Value("${auth.user-cache.max-size:10000}") long maxSize ,
+                            @Value("${auth.user-cache.ttl-seconds:300}") long ttlSeconds ,
+                            MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry , cache , "userDetails");
+    }
+
+    /**
+     * Returns the user of the given username loading it with the given loader if it is not cached yet.
+     *
+     * The returned user is always a copy of the cached one because Spring Security erases the credentials of
+     * the principal after authenticating it, which would otherwise erase the cached password.
+     *
+     * The user is loaded atomically: concurrent misses of the same user wait for a single load, and an eviction can't be
+     * overwritten by a load that started before it.
+     *
+     * @param username Username of the user to fetch.
+     * @param loader Function to load the user if is not cached.
+     * @return Copy of the cached user.
+     */
+    public AuthenticatedUser get(String username , Function<String , AuthenticatedUser> loader){
+        AuthenticatedUser cached = cache.get(keyOf(username) , key -> loader.apply(username));
+
+        return cached.withPassword(cached.getPassword());
+    }
+
+    /**
+     * Removes the cached UserDetails of the given username.
+     *
+     * @param username Username of the user to evict.
+     */
+    public void evict(String username){
+        cache.invalidate(keyOf(username));
+    }
+
+    /**
+     * Removes the cached UserDetails of the users with the given IDs, it scans the whole cache so it's meant for changes
+     * known only by ID (e.g. a token epoch bumped by another instance).
+     *
+     * @param userIds IDs of the users to evict.
+     */
+    public void evictUsers(Set<Integer> userIds){
+        if(!userIds.isEmpty()){
+            cache.asMap().values().removeIf(user -> userIds.contains(user.getId()));
+        }
+    }
+
+    /**
+     * Removes all the cached UserDetails, it should be used when a change affects many users at once (e.g. a role change).
+     */
+    public void evictAll(){
+        cache.invalidateAll();
+    }
+
+    /**
+     * Returns a snapshot of the hit, miss and eviction stats of this cache.
+     *
+     * @return Stats of this cache.
+     */
+    public CacheStats stats(){
+        return cache.stats();
+    }
+
+    /**
+     * Usernames are case-insensitive in the database, so they are cached in lower case to evict every variant of the same user.
+     */
+    private String keyOf(String username){
+        return username.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,243 @@
+package com.marin.UserService.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.marin.UserService.exception.UnsupportedExportFormatException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Locale;
+
+/**
+ * Service for exporting every registered user with its roles as NDJSON or CSV.
+ *
+ * Users are read from a forward-only cursor fetching {@code users.export.fetch-size} rows at a time (default 1000) and
+ * written straight to the output with a streaming generator, so the memory used doesn't grow with the number of users.
+ * MySQL ignores the fetch size and reads the whole result into memory unless the JDBC URL sets {@code useCursorFetch=true},
+ * so without it the rows are streamed one by one instead (fetch size Integer.MIN_VALUE).
+ *
+ * The export runs in a single read-only transaction, so it's sent to a replica when there are any.
+ */
+@Service
+public class UserExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(UserExportService.class);
+
+    private static final String SELECT_USERS = "SELECT u.id, u.username, r.name FROM users u " +
+            "LEFT JOIN user_roles ur ON ur.user_id = u.id " +
+            "LEFT JOIN Roles r ON r.id = ur.role_id " +
+            "ORDER BY u.id";
+
+    private static final CsvSchema CSV_SCHEMA = CsvSchema.builder()
+            .addColumn("id" , CsvSchema.ColumnType.NUMBER)
+            .addColumn("username")
+            .addArrayColumn("roles" , ";")
+            .build()
+            .withHeader();
+
+    /**
+     * Formats the users can be exported in.
+     */
+    public enum Format {
+        NDJSON("application/x-ndjson" , "ndjson"),
+        CSV("text/csv" , "csv");
+
+        private final String contentType;
+
+        private final String extension;
+
+        Format(String contentType , String extension){
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String contentType(){
+            return contentType;
+        }
+
+        public String extension(){
+            return extension;
+        }
+
+        /**
+         * Returns the format whose name matches the given one ignoring case.
+         *
+         * @throws UnsupportedExportFormatException If no format matches.
+         */
+        public static Format fromName(String name) throws UnsupportedExportFormatException {
+            try{
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            }catch(IllegalArgumentException ex){
+                throw new UnsupportedExportFormatException("Unsupported format " + name + ", use ndjson or csv");
+            }
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ObjectMapper objectMapper;
+
+    private final CsvMapper csvMapper = new CsvMapper();
+
+    private final int fetchSize;
+
+    @Autowired
+    public UserExportService(JdbcTemplate jdbcTemplate , PlatformTransactionManager transactionManager , ObjectMapper objectMapper ,
+                             @Value("${users.export.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Writes every registered user ordered by ID to the given output in the given format.
+     * If the output fails (usually because the client went away) the query is cancelled and the error is thrown.
+     *
+     * @param format Format to write the users in.
+     * @param output Stream to write the users to, it's not closed.
+     * @return Number of users exported.
+     */
+    public long exportUsers(Format format , OutputStream output) throws IOException {
+        JsonGenerator generator = createGenerator(format , output);
+        Long exported;
+
+        try{
+            exported = transactionTemplate.execute(status ->
+                    jdbcTemplate.execute((ConnectionCallback<Long>) connection -> streamUsers(connection , generator)));
+        }catch(UncheckedIOException ex){
+            throw ex.getCause();
+        }
+
+        if(format == Format.NDJSON && exported != null && exported > 0){
+            generator.writeRaw('\n');
+        }
+
+        generator.flush();
+
+        return exported == null ? 0 : exported;
+    }
+
+    private JsonGenerator createGenerator(Format format , OutputStream output) throws IOException {
+        JsonGenerator generator;
+
+        if(format == Format.CSV){
+            generator = csvMapper.getFactory().createGenerator(output);
+            generator.setSchema(CSV_SCHEMA);
+        }else{
+            generator = objectMapper.getFactory().createGenerator(output);
+            generator.setRootValueSeparator(new SerializedString("\n"));
+        }
+
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+        return generator;
+    }
+
+    /**
+     * Runs the export query over a forward-only cursor and writes its rows.
+     * When writing fails the statement is cancelled before closing the cursor, so the driver doesn't read the rest of the rows.
+     */
+    private long streamUsers(Connection connection , JsonGenerator generator) throws SQLException {
+        try(PreparedStatement statement = connection.prepareStatement(SELECT_USERS , ResultSet.TYPE_FORWARD_ONLY , ResultSet.CONCUR_READ_ONLY)){
+            statement.setFetchSize(fetchSizeOf(connection));
+
+            try(ResultSet rows = statement.executeQuery()){
+                try{
+                    return writeUsers(rows , generator);
+                }catch(IOException ex){
+                    log.info("User export cancelled: {}" , ex.getMessage());
+
+                    try{
+                        statement.cancel();
+                    }catch(SQLException cancelEx){
+                        ex.addSuppressed(cancelEx);
+                    }
+
+                    throw new UncheckedIOException(ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the fetch size to use in the given connection.
+     * MySQL only honors a positive fetch size with {@code useCursorFetch=true}, otherwise it needs Integer.MIN_VALUE to stream.
+     */
+    private int fetchSizeOf(Connection connection) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+
+        if("MySQL".equalsIgnoreCase(metaData.getDatabaseProductName())
+                && !String.valueOf(metaData.getURL()).toLowerCase(Locale.ROOT).contains("usecursorfetch=true")){
+            return Integer.MIN_VALUE;
+        }
+
+        return fetchSize;
+    }
+
+    /**
+     * Writes the users of the given rows, the rows of a user (one per role) come one after the other.
+     *
+     * @return Number of users written.
+     */
+    private long writeUsers(ResultSet rows , JsonGenerator generator) throws SQLException , IOException {
+        long written = 0;
+        int currentId = 0;
+
+        while(rows.next()){
+            int id = rows.getInt(1);
+
+            if(written == 0 || id != currentId){
+                if(written > 0){
+                    endUser(generator);
+                }
+
+                generator.writeStartObject();
+                generator.writeNumberField("id" , id);
+                generator.writeStringField("username" , rows.getString(2));
+                generator.writeArrayFieldStart("roles");
+
+                currentId = id;
+                written++;
+            }
+
+            String role = rows.getString(3);
+
+            if(role != null){
+                generator.writeString(role);
+            }
+        }
+
+        if(written > 0){
+            endUser(generator);
+        }
+
+        return written;
+    }
+
+    private static void endUser(JsonGenerator generator) throws IOException {
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+}
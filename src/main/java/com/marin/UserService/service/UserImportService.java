@@ -0,0 +1,319 @@
+package com.marin.UserService.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.marin.UserService.dto.ImportResultDTO;
+import com.marin.UserService.dto.UserRegistryDTO;
+import com.marin.UserService.security.BoundedPasswordEncoder;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Service for importing users in bulk from a NDJSON stream of UserRegistryDTO (one user per line).
+ *
+ * Lines are processed in chunks: every chunk is validated, its passwords are hashed in parallel and its users are inserted
+ * with JDBC batches. The users table uses IDENTITY ids, which keeps Hibernate from batching inserts, so this import
+ * bypasses Hibernate and reads the ids generated by the database from the batch itself.
+ *
+ * A result is written for every line, in the same order of the lines, as soon as its chunk is done.
+ */
+@Service
+public class UserImportService {
+
+    private static final String INSERT_USER = "INSERT INTO users (username, password) VALUES (?, ?)";
+
+    private static final String INSERT_USER_ROLE = "INSERT INTO user_roles (user_id, role_id) VALUES (?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final BoundedPasswordEncoder passwordEncoder;
+
+    private final RoleService roleService;
+
+    private final Validator validator;
+
+    private final ObjectMapper objectMapper;
+
+    private final UsernameFilter usernameFilter;
+
+    private final UserVersions userVersions;
+
+    private final int batchSize;
+
+    @Autowired
+    public UserImportService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, BoundedPasswordEncoder passwordEncoder,
+                             RoleService roleService, Validator validator, ObjectMapper objectMapper, UsernameFilter usernameFilter,
+                             UserVersions userVersions, @Value("${users.import.batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.passwordEncoder = passwordEncoder;
+        this.roleService = roleService;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.usernameFilter = usernameFilter;
+        this.userVersions = userVersions;
+        this.batchSize = Math.max(1 , batchSize);
+    }
+
+    /**
+     * Imports the users of the given NDJSON stream writing the result of every line to the given output as NDJSON.
+     * Blank lines are skipped.
+     *
+     * @param input Stream with one UserRegistryDTO per line.
+     * @param output Stream to write one ImportResultDTO per line.
+     */
+    public void importUsers(InputStream input , OutputStream output) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input , StandardCharsets.UTF_8));
+        JsonGenerator generator = objectMapper.createGenerator(output);
+        generator.setRootValueSeparator(new SerializedString("\n"));
+
+        List<ImportRow> chunk = new ArrayList<>(batchSize);
+        int lineNumber = 0;
+        String line;
+
+        while((line = reader.readLine()) != null){
+            lineNumber++;
+
+            if(line.isBlank()){
+                continue;
+            }
+
+            chunk.add(readRow(lineNumber , line));
+
+            if(chunk.size() >= batchSize){
+                importChunk(chunk , generator);
+                chunk.clear();
+            }
+        }
+
+        if(!chunk.isEmpty()){
+            importChunk(chunk , generator);
+        }
+
+        generator.writeRaw('\n');
+        generator.flush();
+    }
+
+    /**
+     * Reads and validates a single line of the import.
+     */
+    private ImportRow readRow(int lineNumber , String line){
+        UserRegistryDTO user;
+
+        try{
+            user = objectMapper.readValue(line , UserRegistryDTO.class);
+        }catch(JsonProcessingException ex){
+            return ImportRow.failed(lineNumber , null , ImportResultDTO.Status.INVALID , "Malformed JSON");
+        }
+
+        if(user == null){
+            return ImportRow.failed(lineNumber , null , ImportResultDTO.Status.INVALID , "Missing user");
+        }
+
+        Set<ConstraintViolation<UserRegistryDTO>> violations = validator.validate(user);
+
+        if(!violations.isEmpty()){
+            String errors = violations.stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", "));
+
+            return ImportRow.failed(lineNumber , user.username() , ImportResultDTO.Status.INVALID , errors);
+        }
+
+        return new ImportRow(lineNumber , user , null);
+    }
+
+    /**
+     * Imports the valid rows of a chunk and writes the result of all its rows.
+     */
+    private void importChunk(List<ImportRow> chunk , JsonGenerator generator) throws IOException {
+        List<ImportRow> pending = rejectDuplicates(chunk);
+
+        if(!pending.isEmpty()){
+            List<String> hashes = passwordEncoder.encodeAll(pending.stream().map(row -> row.user().password()).toList());
+            int roleId = roleService.findRole("CLIENT").getId();
+
+            try{
+                transactionTemplate.executeWithoutResult(status -> insertBatch(pending , hashes , roleId));
+
+                for(ImportRow row : pending){
+                    row.result = new ImportResultDTO(row.line() , row.user().username() , ImportResultDTO.Status.CREATED , null);
+                    usernameFilter.add(row.user().username());
+                }
+            }catch(DataIntegrityViolationException ex){
+                // Someone else took one of the usernames in the meantime, the chunk is retried one user at a time.
+                for(int i = 0 ; i < pending.size() ; i++){
+                    insertSingle(pending.get(i) , hashes.get(i) , roleId);
+                }
+            }
+
+            userVersions.usersChanged(pending.stream()
+                    .filter(row -> row.result.status() == ImportResultDTO.Status.CREATED)
+                    .map(row -> row.user().username())
+                    .toList());
+        }
+
+        for(ImportRow row : chunk){
+            generator.writeObject(row.result);
+        }
+
+        generator.flush();
+    }
+
+    /**
+     * Marks as duplicated the rows whose username is repeated in the chunk or already registered.
+     * Usernames are compared ignoring case, as the database does, and only the ones the username filter doesn't rule out are queried.
+     *
+     * @return Rows that can be inserted.
+     */
+    private List<ImportRow> rejectDuplicates(List<ImportRow> chunk){
+        List<ImportRow> valid = chunk.stream().filter(row -> row.result == null).toList();
+
+        if(valid.isEmpty()){
+            return valid;
+        }
+
+        Set<String> taken = new HashSet<>();
+        List<String> candidates = valid.stream()
+                .map(row -> row.user().username())
+                .filter(usernameFilter::mightContain)
+                .toList();
+
+        if(!candidates.isEmpty()){
+            namedJdbcTemplate.queryForList("SELECT username FROM users WHERE username IN (:usernames)" ,
+                            Map.of("usernames" , candidates) ,
+                            String.class)
+                    .forEach(username -> taken.add(username.toLowerCase(Locale.ROOT)));
+        }
+
+        List<ImportRow> pending = new ArrayList<>(valid.size());
+
+        for(ImportRow row : valid){
+            if(taken.add(row.user().username().toLowerCase(Locale.ROOT))){
+                pending.add(row);
+            }else{
+                row.result = new ImportResultDTO(row.line() , row.user().username() , ImportResultDTO.Status.DUPLICATE , "This username has already been taken");
+            }
+        }
+
+        return pending;
+    }
+
+    /**
+     * Inserts the given rows and their role with two JDBC batches.
+     */
+    private void insertBatch(List<ImportRow> rows , List<String> hashes , int roleId){
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            List<Integer> ids = new ArrayList<>(rows.size());
+
+            try(PreparedStatement insertUsers = connection.prepareStatement(INSERT_USER , Statement.RETURN_GENERATED_KEYS)){
+                for(int i = 0 ; i < rows.size() ; i++){
+                    insertUsers.setString(1 , rows.get(i).user().username());
+                    insertUsers.setString(2 , hashes.get(i));
+                    insertUsers.addBatch();
+                }
+
+                insertUsers.executeBatch();
+
+                try(ResultSet keys = insertUsers.getGeneratedKeys()){
+                    while(keys.next()){
+                        ids.add(keys.getInt(1));
+                    }
+                }
+            }
+
+            if(ids.size() != rows.size()){
+                throw new IllegalStateException("The database returned " + ids.size() + " ids for " + rows.size() + " users");
+            }
+
+            try(PreparedStatement insertRoles = connection.prepareStatement(INSERT_USER_ROLE)){
+                for(int id : ids){
+                    insertRoles.setInt(1 , id);
+                    insertRoles.setInt(2 , roleId);
+                    insertRoles.addBatch();
+                }
+
+                insertRoles.executeBatch();
+            }
+
+            return null;
+        });
+    }
+
+    /**
+     * Inserts a single row with its role in a transaction of its own and sets its result.
+     */
+    private void insertSingle(ImportRow row , String hash , int roleId){
+        try{
+            transactionTemplate.executeWithoutResult(status -> insertBatch(List.of(row) , List.of(hash) , roleId));
+            row.result = new ImportResultDTO(row.line() , row.user().username() , ImportResultDTO.Status.CREATED , null);
+            usernameFilter.add(row.user().username());
+        }catch(DataIntegrityViolationException ex){
+            row.result = new ImportResultDTO(row.line() , row.user().username() , ImportResultDTO.Status.DUPLICATE , "This username has already been taken");
+        }
+    }
+
+    /**
+     * Line of the import with its result once it's known.
+     */
+    private static final class ImportRow {
+
+        private final int line;
+
+        private final UserRegistryDTO user;
+
+        private ImportResultDTO result;
+
+        private ImportRow(int line , UserRegistryDTO user , ImportResultDTO result) {
+            this.line = line;
+            this.user = user;
+            this.result = result;
+        }
+
+        private static ImportRow failed(int line , String username , ImportResultDTO.Status status , String message){
+            return new ImportRow(line , null , new ImportResultDTO(line , username , status , message));
+        }
+
+        private int line() {
+            return line;
+        }
+
+        private UserRegistryDTO user() {
+            return user;
+        }
+    }
+}
@@ -1,12 +1,12 @@
 package com.marin.UserService.service;
 
 import com.marin.UserService.dto.UserDataDTO;
+import com.marin.UserService.dto.UserPageDTO;
 import com.marin.UserService.dto.UserRegistryDTO;
 import com.marin.UserService.entities.User;
+import com.marin.UserService.exception.InvalidCursorException;
 import com.marin.UserService.exception.NoUserFoundException;
 
-import java.util.List;
-
 /**
  * Interface for the User service
  */
@@ -16,7 +16,9 @@ public interface UserService {
 
     void deleteUser(int id);
 
+    void logoutAll(int id);
+
     UserDataDTO fetchUserByName(String name) throws NoUserFoundException;
 
-    List<UserDataDTO> fetchAllUsers();
+    UserPageDTO fetchUsersPage(String cursor , int limit) throws InvalidCursorException;
 }
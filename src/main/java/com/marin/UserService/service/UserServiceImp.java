@@ -1,18 +1,26 @@
 package com.marin.UserService.service;
 
+import com.marin.UserService.datasource.ReadYourWritesTracker;
 import com.marin.UserService.dto.UserDataDTO;
+import com.marin.UserService.dto.UserPageDTO;
 import com.marin.UserService.dto.UserRegistryDTO;
 import com.marin.UserService.entities.Role;
 import com.marin.UserService.entities.User;
+import com.marin.UserService.exception.InvalidCursorException;
 import com.marin.UserService.exception.NoUserFoundException;
-import com.marin.UserService.repository.RoleRepository;
+import com.marin.UserService.exception.UsernameTakenException;
 import com.marin.UserService.repository.UserRepository;
+import com.marin.UserService.security.TokenEpochRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Implementation of the User Service for managing operations related to the User
@@ -20,70 +28,142 @@ import java.util.List;
 @Service
 public class UserServiceImp implements UserService {
 
+    /**
+     * Max number of users returned in a single page.
+     */
+    private static final int MAX_PAGE_SIZE = 500;
+
     @Autowired
     private UserRepository userRepository;
 
     @Autowired
-    private RoleRepository roleRepository;
+    private RoleService roleService;
 
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private TokenEpochRegistry epochRegistry;
+
+    @Autowired
+    private UserDetailsCache userDetailsCache;
+
+    @Autowired
+    private UsernameFilter usernameFilter;
+
+    @Autowired
+    private ReadYourWritesTracker readYourWrites;
+
+    @Autowired
+    private UserVersions userVersions;
 
     /**
-     * Registers a User in the database but first encodes its password using Bcrypt
+     * Registers a User in the database but first encodes its password using Bcrypt.
+     * Its role is taken from the role catalog, so no query is needed to fetch it.
+     *
+     * Usernames that might be taken according to the username filter are checked before hashing the password, so most
+     * duplicates are rejected without hashing. The unique constraint still rejects the ones the filter doesn't know yet.
      *
      * @return User persisted in the database
+     * @throws UsernameTakenException If the username is already registered.
      */
     @Override
     public User registerUser(UserRegistryDTO userRegistry) {
+        if(usernameFilter.mightContain(userRegistry.username()) && userRepository.existsByUsername(userRegistry.username())){
+            throw new UsernameTakenException("This username has already been taken");
+        }
+
         User user = new User();
         user.setUsername(userRegistry.username());
         user.setPassword(passwordEncoder.encode(userRegistry.password()));
 
-        Role userRole = roleRepository.findByName("Client").orElseThrow();
+        Role userRole = roleService.findRole("CLIENT");
 
         user.getRoles().add(userRole);
 
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        usernameFilter.add(saved.getUsername());
+        readYourWrites.recordWrite(saved.getUsername());
+        userVersions.userChanged(saved.getUsername());
+
+        return saved;
     }
 
     /**
-     * Deletes the User from the database whose User ID matches the given as parameter.
+     * Deletes the User from the database whose User ID matches the given as parameter and revokes its issued tokens.
+     * Its cached credentials are evicted too so they can't be used after the deletion.
      */
     @Override
     public void deleteUser(int id) {
+        Optional<String> username = userRepository.findUsernameById(id);
+
         userRepository.deleteById(id);
+        epochRegistry.markDeleted(id);
+
+        username.ifPresent(name -> {
+            userDetailsCache.evict(name);
+            userVersions.userChanged(name);
+        });
+    }
+
+    /**
+     * Revokes every token issued to the user whose User ID matches the given as parameter by bumping its token epoch.
+     */
+    @Override
+    public void logoutAll(int id) {
+        epochRegistry.bump(id);
     }
 
     /**
      * Fetches a User with a username as given as parameter and if found returns its UserDataDTO representation.
+     * Only its id and username are selected from the database, from a replica unless the user has just registered.
      *
      * @throws NoUserFoundException Exception if no user with such username doesn't exist.
      * @return UserDataDTO UserDTO for exposing to the controllers.
      */
     @Override
+    @Transactional(readOnly = true)
     public UserDataDTO fetchUserByName(String username) throws NoUserFoundException {
-        User user = userRepository.findByUsername(username).orElseThrow(() -> new NoUserFoundException("No user with such username"));
-
-        return new UserDataDTO(user.getId() , user.getUsername());
+        return readYourWrites.withWritesOf(username , () -> userRepository.findDataByUsername(username))
+                .orElseThrow(() -> new NoUserFoundException("No user with such username"));
     }
 
     /**
-     * Fetches all Users registered in the database and converts them to UserDataDTO before storing them in a List to return.
+     * Fetches a page of Users ordered by their ID starting after the user of the given cursor.
+     * Pages are fetched by ID (keyset) so every page costs the same no matter how deep it is, and only the id and username are selected.
      *
-     * @return List UserDataDTO of all registered Users
+     * @param cursor Cursor returned with the previous page, null to fetch the first page.
+     * @param limit Max number of users of the page, it is clamped between 1 and MAX_PAGE_SIZE.
+     * @throws InvalidCursorException Exception if the cursor wasn't issued by this API.
+     * @return UserPageDTO Page of users with the cursor of the next page.
      */
     @Override
-    public List<UserDataDTO> fetchAllUsers() {
-        List<User> usersDB = userRepository.findAll();
+    @Transactional(readOnly = true)
+    public UserPageDTO fetchUsersPage(String cursor , int limit) throws InvalidCursorException {
+        int pageSize = Math.max(1 , Math.min(limit , MAX_PAGE_SIZE));
+        int afterId = cursor == null || cursor.isBlank() ? 0 : decodeCursor(cursor);
 
-        List<UserDataDTO> usersData = new ArrayList<>();
+        // One extra user is fetched to know whether there is a next page.
+        List<UserDataDTO> users = userRepository.findDataPage(afterId , PageRequest.of(0 , pageSize + 1));
 
-        for(User userDB : usersDB){
-            usersData.add(new UserDataDTO(userDB.getId() , userDB.getUsername()));
+        if(users.size() <= pageSize){
+            return new UserPageDTO(users , null);
         }
 
-        return usersData;
+        List<UserDataDTO> page = users.subList(0 , pageSize);
+
+        return new UserPageDTO(List.copyOf(page) , encodeCursor(page.get(pageSize - 1).id()));
+    }
+
+    private String encodeCursor(int lastId){
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(Integer.toString(lastId).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private int decodeCursor(String cursor) throws InvalidCursorException {
+        try{
+            return Integer.parseInt(new String(Base64.getUrlDecoder().decode(cursor) , StandardCharsets.US_ASCII));
+        }catch(IllegalArgumentException ex){
+            throw new InvalidCursorException("Invalid page cursor");
+        }
     }
 }
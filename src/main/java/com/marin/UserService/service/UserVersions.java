@@ -0,0 +1,198 @@
+package com.marin.UserService.service;
+
+import com.marin.UserService.datasource.ReadYourWritesTracker;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Versions of the users used to build the ETags of the user endpoints without querying the database.
+ *
+ * Usernames are spread over a fixed number of buckets and every change of a user (register, import or delete) increments
+ * the version of its bucket in the 'user_version_buckets' table. The ETag of a profile is the version of the bucket of its
+ * user and the ETag of the listings is the sum of the versions of every bucket, which grows with every change. A change of
+ * another user of the same bucket only costs a 200 instead of a 304, never a stale 304.
+ *
+ * Every instance keeps a copy of the versions in memory that is refreshed every {@code users.versions.refresh-millis}
+ * (default 5 seconds), as the token epochs are, so every instance issues the same ETags and they survive restarts.
+ *
+ * With read replicas no ETag is issued while the versions involved are younger than the read-your-writes window, so the
+ * response of a replica that didn't catch up yet is never cached under the new version.
+ */
+@Component
+public class UserVersions implements SmartInitializingSingleton {
+
+    /**
+     * Number of buckets the usernames are spread over, it must be the same on every instance.
+     */
+    static final int BUCKETS = 4096;
+
+    /**
+     * How far back the refresh looks for updates, it covers small clock differences between the instances.
+     */
+    private static final long REFRESH_OVERLAP_MILIS = 60000;
+
+    private static final RowMapper<long[]> ROW_MAPPER = (rs , rowNum) -> new long[]{rs.getInt(1) , rs.getLong(2) , rs.getLong(3)};
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    private final ReadYourWritesTracker readYourWrites;
+
+    private final AtomicLongArray versions = new AtomicLongArray(BUCKETS);
+
+    private final AtomicLongArray updatedAt = new AtomicLongArray(BUCKETS);
+
+    /**
+     * Sum of the versions of every bucket.
+     */
+    private final AtomicLong tableVersion = new AtomicLong();
+
+    private final AtomicLong tableUpdatedAt = new AtomicLong();
+
+    /**
+     * Latest update time read from the database.
+     */
+    private final AtomicLong lastUpdate = new AtomicLong();
+
+    @Autowired
+    public UserVersions(JdbcTemplate jdbcTemplate , ReadYourWritesTracker readYourWrites){
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.readYourWrites = readYourWrites;
+    }
+
+    /**
+     * Loads every version once all the beans are created, so the schema has already been initialized.
+     */
+    @Override
+    public void afterSingletonsInstantiated(){
+        merge(jdbcTemplate.query("SELECT bucket, version, updated_at FROM user_version_buckets" , ROW_MAPPER));
+    }
+
+    /**
+     * Reads the versions changed by any instance since the last refresh.
+     */
+    @Scheduled(fixedDelayString = "${users.versions.refresh-millis:5000}")
+    public void refresh(){
+        merge(jdbcTemplate.query("SELECT bucket, version, updated_at FROM user_version_buckets WHERE updated_at >= ?" ,
+                ROW_MAPPER , lastUpdate.get() - REFRESH_OVERLAP_MILIS));
+    }
+
+    /**
+     * Registers a change of the given user, it changes the ETags of the user and of the listings.
+     *
+     * @param username Username of the user registered, imported or deleted.
+     */
+    public void userChanged(String username){
+        usersChanged(List.of(username));
+    }
+
+    /**
+     * Registers a change of every given user with a single update for each bucket involved.
+     *
+     * @param usernames Usernames of the users registered, imported or deleted.
+     */
+    public void usersChanged(Collection<String> usernames){
+        if(usernames.isEmpty()){
+            return;
+        }
+
+        // Sorted so every instance updates the rows in the same order.
+        Map<Integer , Integer> changes = new TreeMap<>();
+        long now = System.currentTimeMillis();
+
+        for(String username : usernames){
+            changes.merge(bucketOf(username) , 1 , Integer::sum);
+        }
+
+        changes.forEach((bucket , count) -> increment(bucket , count , now));
+
+        merge(namedJdbcTemplate.query("SELECT bucket, version, updated_at FROM user_version_buckets WHERE bucket IN (:buckets)" ,
+                Map.of("buckets" , changes.keySet()) , ROW_MAPPER));
+    }
+
+    /**
+     * Returns the strong ETag of the profile of the given user.
+     *
+     * @return ETag of the profile or null if it must not be cached yet.
+     */
+    public String userTag(String username){
+        int bucket = bucketOf(username);
+
+        if(!readYourWrites.isSettled(updatedAt.get(bucket))){
+            return null;
+        }
+
+        return "\"u" + bucket + "-" + versions.get(bucket) + "\"";
+    }
+
+    /**
+     * Returns the strong ETag of the listings of users, the page itself is part of the URL.
+     *
+     * @return ETag of the listings or null if they must not be cached yet.
+     */
+    public String listTag(){
+        if(!readYourWrites.isSettled(tableUpdatedAt.get())){
+            return null;
+        }
+
+        return "\"l" + tableVersion.get() + "\"";
+    }
+
+    private void increment(int bucket , int count , long now){
+        if(update(bucket , count , now)){
+            return;
+        }
+
+        try{
+            jdbcTemplate.update("INSERT INTO user_version_buckets (bucket, version, updated_at) VALUES (?, ?, ?)" , bucket , count , now);
+        }catch(DuplicateKeyException ex){
+            // Other instance changed a user of the same bucket concurrently.
+            update(bucket , count , now);
+        }
+    }
+
+    private boolean update(int bucket , int count , long now){
+        return jdbcTemplate.update("UPDATE user_version_buckets SET version = version + ?, updated_at = ? WHERE bucket = ?" , count , now , bucket) > 0;
+    }
+
+    /**
+     * Merges the given rows (bucket, version and update time), versions never go back.
+     */
+    private void merge(List<long[]> rows){
+        for(long[] row : rows){
+            int bucket = (int) row[0];
+            long previous = versions.getAndAccumulate(bucket , row[1] , Math::max);
+
+            if(row[1] > previous){
+                tableVersion.addAndGet(row[1] - previous);
+                updatedAt.accumulateAndGet(bucket , row[2] , Math::max);
+                tableUpdatedAt.accumulateAndGet(row[2] , Math::max);
+            }
+
+            lastUpdate.accumulateAndGet(row[2] , Math::max);
+        }
+    }
+
+    /**
+     * Usernames are case-insensitive in the database, so they are bucketed in lower case.
+     */
+    static int bucketOf(String username){
+        return Math.floorMod(username.toLowerCase(Locale.ROOT).hashCode() , BUCKETS);
+    }
+}
@@ -0,0 +1,226 @@
+package com.marin.UserService.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory filter of the registered usernames, it tells whether a username might be registered or is definitely not.
+ *
+ * It's used to reject logins of unknown users without querying the database nor hashing the password, and to skip the
+ * duplicate check of registrations whose username is definitely free. Usernames are compared ignoring case, as the database does.
+ *
+ * The filter is built at startup from the users table, read in pages by id, and updated by the registrations and imports
+ * of this instance, which are also added to the filter being rebuilt if there is one.
+ * Users registered by other instances are caught up by reading the users with a higher id than the last one seen, at most
+ * once every 100ms and only when a login is about to be rejected. Deleted usernames can't be removed from the filter, they
+ * only cost a query when used, and are dropped by the rebuild every {@code auth.username-filter.rebuild-minutes}.
+ *
+ * NOTE: Rejecting unknown users faster than wrong passwords tells whether a username is registered, set
+ * {@code auth.username-filter.enabled=false} if that must not be disclosed.
+ */
+@Component
+public class UsernameFilter implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(UsernameFilter.class);
+
+    /**
+     * Minimum time between catch-up queries.
+     */
+    private static final long CATCH_UP_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /**
+     * How many ids behind the last one seen are read again on every catch-up, ids of concurrent inserts may commit out of order.
+     */
+    private static final int CATCH_UP_OVERLAP_IDS = 100;
+
+    /**
+     * Number of users read by every query of a rebuild, so the driver never buffers the whole table.
+     */
+    private static final int REBUILD_PAGE_SIZE = 10000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final boolean enabled;
+
+    private final long expectedUsers;
+
+    private final double falsePositiveProbability;
+
+    private final ReentrantLock syncLock = new ReentrantLock();
+
+    private volatile BloomFilter filter;
+
+    /**
+     * Filter being rebuilt, null if no rebuild is running.
+     */
+    private volatile BloomFilter building;
+
+    private volatile int lastSeenId;
+
+    private volatile long lastCatchUp;
+
+    @Autowired
+    public UsernameFilter(JdbcTemplate jdbcTemplate ,
+                          @Value("${auth.username-filter.enabled:true}") boolean enabled ,
+                          @Value("${auth.username-filter.expected-users:1000000}") long expectedUsers ,
+                          @Value("${auth.username-filter.false-positive-probability:0.01}") double falsePositiveProbability ,
+                          MeterRegistry meterRegistry){
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.expectedUsers = expectedUsers;
+        this.falsePositiveProbability = falsePositiveProbability;
+        this.lastCatchUp = System.nanoTime() - CATCH_UP_INTERVAL_NANOS;
+
+        Gauge.builder("auth.username.filter.size" , this , usernameFilter -> usernameFilter.filter == null ? 0 : usernameFilter.filter.sizeInBytes())
+                .description("Memory used by the username filter in bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Builds the filter once all the beans are created, so the schema has already been initialized.
+     */
+    @Override
+    public void afterSingletonsInstantiated(){
+        rebuild();
+    }
+
+    /**
+     * Builds a new filter with every registered username and replaces the current one.
+     */
+    @Scheduled(fixedDelayString = "${auth.username-filter.rebuild-minutes:60}" , initialDelayString = "${auth.username-filter.rebuild-minutes:60}" , timeUnit = TimeUnit.MINUTES)
+    public void rebuild(){
+        if(!enabled){
+            return;
+        }
+
+        BloomFilter rebuilt = new BloomFilter(expectedUsers , falsePositiveProbability);
+        building = rebuilt;
+
+        int maxId = 0;
+        int pageEnd;
+
+        do{
+            int[] page = {maxId , 0};
+
+            jdbcTemplate.query("SELECT id, username FROM users WHERE id > ? ORDER BY id LIMIT ?" , rs -> {
+                rebuilt.add(normalize(rs.getString(2)));
+                page[0] = Math.max(page[0] , rs.getInt(1));
+                page[1]++;
+            } , maxId , REBUILD_PAGE_SIZE);
+
+            maxId = page[0];
+            pageEnd = page[1];
+        }while(pageEnd == REBUILD_PAGE_SIZE);
+
+        syncLock.lock();
+
+        try{
+            filter = rebuilt;
+            building = null;
+            lastSeenId = maxId;
+        }finally{
+            syncLock.unlock();
+        }
+
+        // Users registered by other instances while the filter was being built, it must run even if a catch-up just did.
+        catchUp(true);
+
+        log.info("Built username filter of {} bytes" , rebuilt.sizeInBytes());
+    }
+
+    /**
+     * Determines whether a username might be registered without querying the database.
+     * It's meant for checks where a false answer is double-checked anyway (e.g. by the unique constraint).
+     *
+     * @param username Username to check.
+     * @return False if the username is definitely not registered, True if it might be.
+     */
+    public boolean mightContain(String username){
+        BloomFilter current = filter;
+
+        return current == null || current.mightContain(normalize(username));
+    }
+
+    /**
+     * Determines whether a username might be registered, catching up the users registered by other instances before
+     * answering that it isn't.
+     *
+     * @param username Username to check.
+     * @return False if the username is definitely not registered, True if it might be.
+     */
+    public boolean mightExist(String username){
+        if(mightContain(username)){
+            return true;
+        }
+
+        catchUp(false);
+
+        return mightContain(username);
+    }
+
+    /**
+     * Adds a username registered by this instance, to the filter being rebuilt too so the rebuild doesn't lose it.
+     *
+     * @param username Username registered.
+     */
+    public void add(String username){
+        String normalized = normalize(username);
+        // Read before the current filter: once a rebuild has finished, the current filter is the rebuilt one.
+        BloomFilter next = building;
+        BloomFilter current = filter;
+
+        if(next != null){
+            next.add(normalized);
+        }
+
+        if(current != null){
+            current.add(normalized);
+        }
+    }
+
+    /**
+     * Adds the users inserted since the last one seen, unless it's not forced and other catch-up ran less than 100ms ago.
+     * Callers wait for a catch-up in progress so they see its users.
+     */
+    private void catchUp(boolean force){
+        syncLock.lock();
+
+        try{
+            long now = System.nanoTime();
+
+            if(filter == null || (!force && now - lastCatchUp < CATCH_UP_INTERVAL_NANOS)){
+                return;
+            }
+
+            lastCatchUp = now;
+            BloomFilter current = filter;
+            int lastSeen = lastSeenId;
+            int[] maxId = {lastSeen};
+
+            jdbcTemplate.query("SELECT id, username FROM users WHERE id > ?" , rs -> {
+                current.add(normalize(rs.getString(2)));
+                maxId[0] = Math.max(maxId[0] , rs.getInt(1));
+            } , lastSeen - CATCH_UP_OVERLAP_IDS);
+
+            lastSeenId = maxId[0];
+        }finally{
+            syncLock.unlock();
+        }
+    }
+
+    private static String normalize(String username){
+        return username.toLowerCase(Locale.ROOT);
+    }
+}
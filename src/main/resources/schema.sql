@@ -5,5 +5,37 @@ CREATE TABLE IF NOT EXISTS Roles (
 );
 
 INSERT IGNORE INTO Roles (name) VALUES
-("ADMIN"),
-("CLIENT");
+('ADMIN'),
+('CLIENT');
+
+CREATE TABLE IF NOT EXISTS rate_limit_buckets (
+    bucket_key VARCHAR(64) NOT NULL,
+    window_start BIGINT NOT NULL,
+    consumed BIGINT NOT NULL,
+    PRIMARY KEY(bucket_key)
+);
+
+CREATE TABLE IF NOT EXISTS user_token_epochs (
+    user_id INT NOT NULL,
+    epoch INT NOT NULL,
+    updated_at BIGINT NOT NULL,
+    PRIMARY KEY(user_id)
+);
+
+CREATE TABLE IF NOT EXISTS jwt_signing_keys (
+    kid VARCHAR(36) NOT NULL,
+    public_key VARBINARY(1024) NOT NULL,
+    private_key VARBINARY(4096) NOT NULL,
+    generation BIGINT NOT NULL,
+    activates_at BIGINT NOT NULL,
+    expires_at BIGINT NOT NULL,
+    PRIMARY KEY(kid),
+    UNIQUE(generation)
+);
+
+CREATE TABLE IF NOT EXISTS user_version_buckets (
+    bucket INT NOT NULL,
+    version BIGINT NOT NULL,
+    updated_at BIGINT NOT NULL,
+    PRIMARY KEY(bucket)
+);
@@ -0,0 +1,88 @@
+package com.marin.UserService.controller;
+
+import com.marin.UserService.security.JwtUtil;
+import com.marin.UserService.security.TokenEpochRegistry;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultMatcher;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Checks the logins through the whole API.
+ */
+@SpringBootTest(properties = "rate-limit.enabled=false")
+@AutoConfigureMockMvc
+class AuthControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Value("${jwt.secret}")
+    private String secret;
+
+    @Test
+    void usersDeletedByAnotherInstanceCantLogIn() throws Exception {
+        mockMvc.perform(post("/auth/register")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(credentials("deleted-jhon")))
+                .andExpect(status().isOk());
+
+        // The credentials of the user are now cached by this instance.
+        login("deleted-jhon" , status().isOk());
+
+        // Other instance deletes the user, the cache of this instance isn't evicted until the next refresh of the epochs.
+        int id = jdbcTemplate.queryForObject("SELECT id FROM users WHERE username = ?" , Integer.class , "deleted-jhon");
+        jdbcTemplate.update("DELETE FROM user_roles WHERE user_id = ?" , id);
+        jdbcTemplate.update("DELETE FROM users WHERE id = ?" , id);
+        jdbcTemplate.update("INSERT INTO user_token_epochs (user_id, epoch, updated_at) VALUES (?, ?, ?)" ,
+                id , TokenEpochRegistry.DELETED_EPOCH , System.currentTimeMillis());
+
+        login("deleted-jhon" , status().isUnauthorized());
+    }
+
+    @Test
+    void legacyTokensAreRejectedByDefault(){
+        String legacyToken = Jwts.builder()
+                .subject("admin")
+                .claim("id" , 1)
+                .claim("epoch" , 0)
+                .claim("roles" , List.of("ROLE_ADMIN"))
+                .expiration(new Date(System.currentTimeMillis() + 60000))
+                .signWith(Keys.hmacShaKeyFor(secret.getBytes()) , Jwts.SIG.HS256)
+                .compact();
+
+        assertThrows(JwtException.class , () -> jwtUtil.verifyToken(legacyToken));
+    }
+
+    private void login(String username , ResultMatcher expected) throws Exception {
+        mockMvc.perform(post("/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(credentials(username)))
+                .andExpect(expected);
+    }
+
+    private static String credentials(String username){
+        return "{\"username\":\"" + username + "\",\"password\":\"password\"}";
+    }
+}
@@ -0,0 +1,133 @@
+package com.marin.UserService.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.marin.UserService.service.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Checks the conditional requests of the profiles and listings of users through the whole API.
+ */
+@SpringBootTest(properties = "rate-limit.enabled=false")
+@AutoConfigureMockMvc
+class UserControllerETagTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @MockitoSpyBean
+    private UserService userService;
+
+    private String adminToken;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        adminToken = login("admin" , "adminpass");
+    }
+
+    @Test
+    void unchangedProfileIsNotModifiedWithoutQueryingTheUsers() throws Exception {
+        register("etag-jhon");
+        String etag = fetch("/users/profile/etag-jhon" , null).getResponse().getHeader(HttpHeaders.ETAG);
+
+        assertNotNull(etag);
+        clearInvocations(userService);
+
+        mockMvc.perform(get("/users/profile/etag-jhon")
+                        .header(HttpHeaders.AUTHORIZATION , "Bearer " + adminToken)
+                        .header(HttpHeaders.IF_NONE_MATCH , etag))
+                .andExpect(status().isNotModified());
+
+        verify(userService , never()).fetchUserByName(any());
+    }
+
+    @Test
+    void profileTagChangesAfterTheUserIsDeleted() throws Exception {
+        register("etag-eli");
+        MvcResult profile = fetch("/users/profile/etag-eli" , null);
+        String etag = profile.getResponse().getHeader(HttpHeaders.ETAG);
+        int id = objectMapper.readTree(profile.getResponse().getContentAsString()).get("id").asInt();
+
+        mockMvc.perform(delete("/users/" + id).header(HttpHeaders.AUTHORIZATION , "Bearer " + adminToken))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/users/profile/etag-eli")
+                        .header(HttpHeaders.AUTHORIZATION , "Bearer " + adminToken)
+                        .header(HttpHeaders.IF_NONE_MATCH , etag))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void listingTagChangesAfterARegistration() throws Exception {
+        String etag = fetch("/users" , null).getResponse().getHeader(HttpHeaders.ETAG);
+
+        clearInvocations(userService);
+        mockMvc.perform(get("/users")
+                        .header(HttpHeaders.AUTHORIZATION , "Bearer " + adminToken)
+                        .header(HttpHeaders.IF_NONE_MATCH , etag))
+                .andExpect(status().isNotModified());
+        verify(userService , never()).fetchUsersPage(any() , anyInt());
+
+        register("etag-ana");
+
+        String newEtag = fetch("/users" , etag).getResponse().getHeader(HttpHeaders.ETAG);
+
+        assertNotEquals(etag , newEtag);
+    }
+
+    private MvcResult fetch(String path , String ifNoneMatch) throws Exception {
+        var request = get(path).header(HttpHeaders.AUTHORIZATION , "Bearer " + adminToken);
+
+        if(ifNoneMatch != null){
+            request.header(HttpHeaders.IF_NONE_MATCH , ifNoneMatch);
+        }
+
+        return mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andReturn();
+    }
+
+    private void register(String username) throws Exception {
+        mockMvc.perform(post("/auth/register")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(credentials(username , "password")))
+                .andExpect(status().isOk());
+    }
+
+    private String login(String username , String password) throws Exception {
+        return mockMvc.perform(post("/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(credentials(username , password)))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+    }
+
+    private static String credentials(String username , String password){
+        return "{\"username\":\"" + username + "\",\"password\":\"" + password + "\"}";
+    }
+}
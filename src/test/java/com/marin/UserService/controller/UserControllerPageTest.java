@@ -0,0 +1,101 @@
+package com.marin.UserService.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Checks the listing of users is walked page by page following the cursors through the whole API.
+ */
+@SpringBootTest(properties = "rate-limit.enabled=false")
+@AutoConfigureMockMvc
+class UserControllerPageTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private String adminToken;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        adminToken = mockMvc.perform(post("/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"admin\",\"password\":\"adminpass\"}"))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+    }
+
+    @Test
+    void cursorsWalkEveryUserOnce() throws Exception {
+        for(String username : List.of("page-ana" , "page-eli" , "page-jhon")){
+            mockMvc.perform(post("/auth/register")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"username\":\"" + username + "\",\"password\":\"password\"}"))
+                    .andExpect(status().isOk());
+        }
+
+        List<String> usernames = new ArrayList<>();
+        int lastId = 0;
+        String cursor = null;
+
+        do{
+            JsonNode page = page(cursor , 2);
+
+            assertTrue(page.get("users").size() <= 2);
+
+            for(JsonNode user : page.get("users")){
+                assertTrue(user.get("id").asInt() > lastId , "Users are ordered by id and never repeated");
+                lastId = user.get("id").asInt();
+                usernames.add(user.get("username").asText());
+            }
+
+            cursor = page.get("nextCursor").isNull() ? null : page.get("nextCursor").asText();
+        }while(cursor != null);
+
+        assertTrue(usernames.containsAll(List.of("admin" , "page-ana" , "page-eli" , "page-jhon")));
+    }
+
+    @Test
+    void invalidCursorIsABadRequest() throws Exception {
+        mockMvc.perform(get("/users")
+                        .param("cursor" , "not a cursor")
+                        .header(HttpHeaders.AUTHORIZATION , "Bearer " + adminToken))
+                .andExpect(status().isBadRequest());
+    }
+
+    private JsonNode page(String cursor , int limit) throws Exception {
+        var request = get("/users")
+                .param("limit" , Integer.toString(limit))
+                .header(HttpHeaders.AUTHORIZATION , "Bearer " + adminToken);
+
+        if(cursor != null){
+            request.param("cursor" , cursor);
+        }
+
+        return objectMapper.readTree(mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString());
+    }
+}
@@ -0,0 +1,77 @@
+package com.marin.UserService.datasource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks the routing between a primary and a replica using two embedded databases, each one holding a row with its name.
+ */
+class ReplicaRoutingDataSourceTest {
+
+    private JdbcTemplate jdbcTemplate;
+
+    private TransactionTemplate readOnlyTransaction;
+
+    private TransactionTemplate readWriteTransaction;
+
+    private ReadYourWritesTracker tracker;
+
+    @BeforeEach
+    void setUp(){
+        DataSource primary = database("routing_primary");
+        DataSource replica = database("routing_replica");
+
+        DataSource dataSource = new LazyConnectionDataSourceProxy(new ReplicaRoutingDataSource(primary , List.of(replica)));
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        readWriteTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        tracker = new ReadYourWritesTracker("jdbc:h2:mem:routing_replica" , 5000);
+    }
+
+    @Test
+    void readOnlyTransactionsUseTheReplica(){
+        assertEquals("routing_replica" , readOnlyTransaction.execute(status -> databaseName()));
+    }
+
+    @Test
+    void otherStatementsUseThePrimary(){
+        assertEquals("routing_primary" , readWriteTransaction.execute(status -> databaseName()));
+        assertEquals("routing_primary" , databaseName());
+    }
+
+    @Test
+    void recentWritersReadFromThePrimary(){
+        tracker.recordWrite("Jhon");
+
+        assertEquals("routing_primary" , readOnlyTransaction.execute(status -> tracker.withWritesOf("jhon" , this::databaseName)));
+        assertEquals("routing_replica" , readOnlyTransaction.execute(status -> tracker.withWritesOf("eli" , this::databaseName)));
+    }
+
+    private String databaseName(){
+        return jdbcTemplate.queryForObject("SELECT name FROM database_name" , String.class);
+    }
+
+    private static DataSource database(String name){
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + ";MODE=MySQL;DB_CLOSE_DELAY=-1" , "sa" , "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS database_name (name VARCHAR(32))");
+        jdbcTemplate.update("DELETE FROM database_name");
+        jdbcTemplate.update("INSERT INTO database_name (name) VALUES (?)" , name);
+
+        return dataSource;
+    }
+}
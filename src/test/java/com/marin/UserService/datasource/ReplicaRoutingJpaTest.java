@@ -0,0 +1,115 @@
+package com.marin.UserService.datasource;
+
+import com.marin.UserService.repository.UserRepository;
+import com.marin.UserService.service.RoleService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.env.Environment;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Checks the routing of the JPA repositories and of a whole login request with a replica configured.
+ *
+ * The replica is an embedded database of its own that nothing replicates to, so a row only found there proves the
+ * query went to the replica and a row only changed in the primary proves the write went to the primary. Its tables are
+ * created by replica-schema.sql when it's opened, so they exist before the context starts, but it has no roles.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:jpa_routing_primary;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "datasource.replica.urls=" + ReplicaRoutingJpaTest.REPLICA_URL,
+        "auth.bcrypt.strength=5"
+})
+@AutoConfigureMockMvc
+class ReplicaRoutingJpaTest {
+
+    static final String REPLICA_URL = "jdbc:h2:mem:jpa_routing_replica;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;" +
+            "INIT=RUNSCRIPT FROM 'classpath:replica-schema.sql'";
+
+    private static final String PASSWORD = "jhonpass";
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleService roleService;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    @Qualifier("primaryDataSource")
+    private DataSource primaryDataSource;
+
+    private JdbcTemplate primary;
+
+    private JdbcTemplate replica;
+
+    @BeforeEach
+    void setUp(){
+        primary = new JdbcTemplate(primaryDataSource);
+        replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL , "sa" , ""));
+    }
+
+    @Test
+    void openInViewIsTurnedOff(){
+        assertEquals("false" , environment.getProperty("spring.jpa.open-in-view"));
+    }
+
+    @Test
+    void rolesAreReadFromThePrimary(){
+        replica.update("DELETE FROM roles");
+        roleService.refreshRoles();
+
+        assertEquals(2 , roleService.fetchAllRoles().size());
+        assertEquals("ADMIN" , roleService.findRole("admin").getName());
+    }
+
+    @Test
+    void readOnlyRepositoryQueriesUseTheReplica(){
+        replica.update("INSERT INTO users (id, username, password) VALUES (?, ?, ?)" , 1000 , "replica-only" , "hash");
+
+        assertFalse(userRepository.findCredentialsByUsername("replica-only").isEmpty());
+        assertEquals(0 , primary.queryForObject("SELECT COUNT(*) FROM users WHERE username = ?" , Integer.class , "replica-only"));
+    }
+
+    @Test
+    void loginRehashIsWrittenToThePrimary() throws Exception {
+        String outdatedHash = new BCryptPasswordEncoder(4).encode(PASSWORD);
+
+        primary.update("INSERT INTO users (username, password) VALUES (?, ?)" , "jhon" , outdatedHash);
+        int id = primary.queryForObject("SELECT id FROM users WHERE username = ?" , Integer.class , "jhon");
+        int roleId = primary.queryForObject("SELECT id FROM Roles WHERE name = 'CLIENT'" , Integer.class);
+        primary.update("INSERT INTO user_roles (user_id, role_id) VALUES (?, ?)" , id , roleId);
+
+        replica.update("INSERT INTO users (id, username, password) VALUES (?, ?, ?)" , id , "jhon" , outdatedHash);
+        replica.update("MERGE INTO roles (id, name) KEY(id) VALUES (?, ?)" , roleId , "CLIENT");
+        replica.update("INSERT INTO user_roles (user_id, role_id) VALUES (?, ?)" , id , roleId);
+
+        mockMvc.perform(post("/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"jhon\",\"password\":\"" + PASSWORD + "\"}"))
+                .andExpect(status().isOk());
+
+        assertTrue(primary.queryForObject("SELECT password FROM users WHERE id = ?" , String.class , id).startsWith("$2a$05$"));
+        assertEquals(outdatedHash , replica.queryForObject("SELECT password FROM users WHERE id = ?" , String.class , id));
+    }
+}
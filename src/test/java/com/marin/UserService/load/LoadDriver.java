@@ -0,0 +1,132 @@
+package com.marin.UserService.load;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Closed-loop load driver, every client runs on its own virtual thread and issues one operation after the other.
+ *
+ * Latencies are recorded per client in arrays of their own so the measurement does not add contention, they are
+ * merged once the run is over.
+ */
+public class LoadDriver {
+
+    /**
+     * Operation issued by a client, it returns true if the request succeeded.
+     * The client index is given so every client can work with its own user.
+     */
+    @FunctionalInterface
+    public interface Operation {
+        boolean run(int client , long iteration) throws Exception;
+    }
+
+    /**
+     * Summary of a run.
+     *
+     * @param requests Number of requests measured.
+     * @param errors Number of requests that failed or threw.
+     * @param throughput Requests per second.
+     * @param p50Millis Median latency.
+     * @param p99Millis 99th percentile latency.
+     * @param maxMillis Highest latency.
+     */
+    public record Result(long requests , long errors , double throughput , double p50Millis , double p99Millis , double maxMillis){}
+
+    private final int clients;
+
+    private final Duration warmup;
+
+    private final Duration duration;
+
+    public LoadDriver(int clients , Duration warmup , Duration duration){
+        this.clients = clients;
+        this.warmup = warmup;
+        this.duration = duration;
+    }
+
+    public Result run(Operation operation) throws Exception {
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+
+        List<Future<long[]>> futures = new ArrayList<>(clients);
+        long[] errors = new long[clients];
+
+        try(ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()){
+            for(int i = 0; i < clients; i++){
+                int client = i;
+                futures.add(executor.submit(() -> runClient(operation , client , measureFrom , end , errors)));
+            }
+
+            List<long[]> latencies = new ArrayList<>(clients);
+            for(Future<long[]> future : futures){
+                latencies.add(future.get());
+            }
+
+            return summarize(latencies , Arrays.stream(errors).sum());
+        }
+    }
+
+    private long[] runClient(Operation operation , int client , long measureFrom , long end , long[] errors){
+        long[] latencies = new long[1024];
+        int count = 0;
+        long failed = 0;
+
+        for(long iteration = 0; ; iteration++){
+            long before = System.nanoTime();
+            if(before >= end){
+                break;
+            }
+
+            boolean ok;
+            try{
+                ok = operation.run(client , iteration);
+            }catch(Exception ex){
+                ok = false;
+            }
+
+            if(before < measureFrom){
+                continue;
+            }
+
+            if(count == latencies.length){
+                latencies = Arrays.copyOf(latencies , count * 2);
+            }
+            latencies[count++] = System.nanoTime() - before;
+
+            if(!ok){
+                failed++;
+            }
+        }
+
+        errors[client] = failed;
+        return Arrays.copyOf(latencies , count);
+    }
+
+    private Result summarize(List<long[]> perClient , long errors){
+        long[] all = perClient.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+
+        if(all.length == 0){
+            return new Result(0 , errors , 0 , 0 , 0 , 0);
+        }
+
+        double seconds = duration.toNanos() / 1e9;
+
+        return new Result(all.length , errors , all.length / seconds ,
+                millis(percentile(all , 0.50)) , millis(percentile(all , 0.99)) , millis(all[all.length - 1]));
+    }
+
+    private static long percentile(long[] sorted , double percentile){
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0 , index)];
+    }
+
+    private static double millis(long nanos){
+        return nanos / 1e6;
+    }
+}
@@ -0,0 +1,65 @@
+package com.marin.UserService.load;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Weighted mix of the operations issued by the load test.
+ *
+ * It is parsed from a list like "register:5,login:15,profile:60,list:20", the weights are relative so they don't
+ * need to add up to 100.
+ */
+public class LoadMix {
+
+    public enum Operation { REGISTER , LOGIN , PROFILE , LIST }
+
+    private final Map<Operation , Integer> weights;
+
+    private final Operation[] slots;
+
+    private LoadMix(Map<Operation , Integer> weights){
+        this.weights = weights;
+
+        int total = weights.values().stream().mapToInt(Integer::intValue).sum();
+        if(total <= 0){
+            throw new IllegalArgumentException("The load mix must have at least one operation with a positive weight");
+        }
+
+        this.slots = new Operation[total];
+        int index = 0;
+        for(Map.Entry<Operation , Integer> entry : weights.entrySet()){
+            for(int i = 0; i < entry.getValue(); i++){
+                slots[index++] = entry.getKey();
+            }
+        }
+    }
+
+    public static LoadMix parse(String mix){
+        Map<Operation , Integer> weights = new EnumMap<>(Operation.class);
+
+        for(String part : mix.split(",")){
+            String[] pair = part.trim().split(":");
+            if(pair.length != 2){
+                throw new IllegalArgumentException("Invalid load mix entry: " + part);
+            }
+
+            weights.put(Operation.valueOf(pair[0].trim().toUpperCase(Locale.ROOT)) , Integer.parseInt(pair[1].trim()));
+        }
+
+        return new LoadMix(weights);
+    }
+
+    /**
+     * Picks the operation of the given draw.
+     *
+     * @param draw Any non-negative number, usually random.
+     */
+    public Operation pick(long draw){
+        return slots[(int) (draw % slots.length)];
+    }
+
+    public Map<Operation , Integer> getWeights(){
+        return weights;
+    }
+}
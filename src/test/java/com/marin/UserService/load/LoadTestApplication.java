@@ -0,0 +1,64 @@
+package com.marin.UserService.load;
+
+import com.marin.UserService.UserServiceApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Starts the whole API on a random port against an embedded database of its own so the load tests can
+ * launch several configurations one after the other.
+ *
+ * The properties are passed as command line arguments so they take precedence over the test application.properties.
+ */
+public class LoadTestApplication implements AutoCloseable {
+
+    private final ConfigurableApplicationContext context;
+
+    private final URI baseUri;
+
+    private LoadTestApplication(ConfigurableApplicationContext context){
+        this.context = context;
+        this.baseUri = URI.create("http://localhost:" + context.getEnvironment().getProperty("local.server.port"));
+    }
+
+    /**
+     * Starts the API.
+     *
+     * @param databaseName Name of the in-memory database, it must be different on every start.
+     * @param properties Properties of this run.
+     * @return The running API.
+     */
+    public static LoadTestApplication start(String databaseName , Map<String , String> properties){
+        Map<String , String> merged = new LinkedHashMap<>();
+        merged.put("server.port" , "0");
+        merged.put("spring.datasource.url" , "jdbc:h2:mem:" + databaseName + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        merged.put("rate-limit.enabled" , "false");
+        merged.putAll(properties);
+
+        String[] args = merged.entrySet().stream()
+                .map(entry -> "--" + entry.getKey() + "=" + entry.getValue())
+                .toArray(String[]::new);
+
+        return new LoadTestApplication(new SpringApplicationBuilder(UserServiceApplication.class).run(args));
+    }
+
+    public URI getBaseUri(){
+        return baseUri;
+    }
+
+    /**
+     * Returns the value of the given property in the running API.
+     */
+    public String getProperty(String key){
+        return context.getEnvironment().getRequiredProperty(key);
+    }
+
+    @Override
+    public void close(){
+        context.close();
+    }
+}
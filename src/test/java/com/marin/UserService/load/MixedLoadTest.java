@@ -0,0 +1,97 @@
+package com.marin.UserService.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * End to end load test of the API against an embedded database in MySQL mode, it needs no network nor MySQL.
+ *
+ * Every client registers and logs in its own user and then issues a random mix of register, login, profile and
+ * list requests. Lists are sent with the token of the admin since only admins can list users.
+ * The run is configured with system properties:
+ * <ul>
+ *     <li>load.clients: concurrent clients (default 100).</li>
+ *     <li>load.warmup-seconds and load.duration-seconds: length of the run (default 10 and 30).</li>
+ *     <li>load.mix: weights of the operations (default register:5,login:15,profile:60,list:20).</li>
+ *     <li>load.max-error-rate and load.max-p99-millis: thresholds that fail the test (default 0.01 and no limit).</li>
+ * </ul>
+ * The results are written to target/load/mixed-load.json.
+ *
+ * Run with: mvn -Pload test
+ */
+@Tag("load")
+class MixedLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(MixedLoadTest.class);
+
+    private static final String PASSWORD = "loadtest";
+
+    @Test
+    void mixedLoad() throws Exception {
+        int clients = Integer.getInteger("load.clients" , 100);
+        Duration warmup = Duration.ofSeconds(Long.getLong("load.warmup-seconds" , 10));
+        Duration duration = Duration.ofSeconds(Long.getLong("load.duration-seconds" , 30));
+        LoadMix mix = LoadMix.parse(System.getProperty("load.mix" , "register:5,login:15,profile:60,list:20"));
+        double maxErrorRate = Double.parseDouble(System.getProperty("load.max-error-rate" , "0.01"));
+        double maxP99Millis = Double.parseDouble(System.getProperty("load.max-p99-millis" , "0"));
+
+        LoadDriver.Result result;
+
+        try(LoadTestApplication app = LoadTestApplication.start("mixed_load" , Map.of())){
+            UserServiceClient client = new UserServiceClient(app.getBaseUri());
+            String[] tokens = new String[clients];
+            String adminToken = client.login(app.getProperty("auth.admin.username") , app.getProperty("auth.admin.password"));
+
+            assertNotNull(adminToken , "The admin couldn't log in");
+
+            for(int i = 0; i < clients; i++){
+                client.register(username(i) , PASSWORD);
+                tokens[i] = client.login(username(i) , PASSWORD);
+            }
+
+            LoadDriver driver = new LoadDriver(clients , warmup , duration);
+
+            result = driver.run((user , iteration) -> switch(mix.pick(ThreadLocalRandom.current().nextLong(Long.MAX_VALUE))){
+                case REGISTER -> client.register(username(user) + "-" + iteration , PASSWORD) == 200;
+                case LOGIN -> client.login(username(user) , PASSWORD) != null;
+                case PROFILE -> client.profile(tokens[user]) == 200;
+                case LIST -> client.list(adminToken , 50) == 200;
+            });
+        }
+
+        Map<String , Object> report = new LinkedHashMap<>();
+        report.put("clients" , clients);
+        report.put("durationSeconds" , duration.toSeconds());
+        report.put("mix" , mix.getWeights());
+        report.put("result" , result);
+
+        File output = new File("target/load/mixed-load.json");
+        output.getParentFile().mkdirs();
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(output , report);
+
+        log.info("Mixed load: {}" , result);
+
+        assertTrue(result.requests() > 0 , "No request was measured");
+        assertTrue((double) result.errors() / result.requests() <= maxErrorRate ,
+                "Error rate above " + maxErrorRate + ": " + result.errors() + " of " + result.requests());
+        assertTrue(maxP99Millis <= 0 || result.p99Millis() <= maxP99Millis ,
+                "p99 above " + maxP99Millis + "ms: " + result.p99Millis() + "ms");
+    }
+
+    private static String username(int index){
+        return "load" + index;
+    }
+}
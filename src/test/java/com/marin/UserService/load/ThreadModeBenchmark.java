@@ -0,0 +1,80 @@
+package com.marin.UserService.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the throughput and latency of the API running its requests on Tomcat's platform thread pool against
+ * running them on virtual threads.
+ *
+ * Every mode runs the same mix of profile lookups and logins (1 login every 10 requests) with more clients than
+ * Tomcat threads, so the platform mode queues requests while the virtual mode does not.
+ * The results are written to target/benchmarks/thread-modes.json.
+ *
+ * Run with: mvn -Pbenchmark test
+ */
+@Tag("benchmark")
+class ThreadModeBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger(ThreadModeBenchmark.class);
+
+    private static final int CLIENTS = 200;
+
+    private static final String PASSWORD = "benchmark";
+
+    @Test
+    void compareThreadModes() throws Exception {
+        Map<String , LoadDriver.Result> results = new LinkedHashMap<>();
+
+        results.put("platform" , runMode("platform" , false));
+        results.put("virtual" , runMode("virtual" , true));
+
+        File output = new File("target/benchmarks/thread-modes.json");
+        output.getParentFile().mkdirs();
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(output , results);
+
+        results.forEach((mode , result) -> log.info("{}: {}" , mode , result));
+        results.values().forEach(result -> assertTrue(result.requests() > 0));
+    }
+
+    private LoadDriver.Result runMode(String mode , boolean virtualThreads) throws Exception {
+        Map<String , String> properties = Map.of(
+                "spring.threads.virtual.enabled" , String.valueOf(virtualThreads) ,
+                "server.tomcat.threads.max" , "50" ,
+                "auth.bcrypt.strength" , "10");
+
+        try(LoadTestApplication app = LoadTestApplication.start("threads_" + mode , properties)){
+            UserServiceClient client = new UserServiceClient(app.getBaseUri());
+            String[] tokens = new String[CLIENTS];
+
+            for(int i = 0; i < CLIENTS; i++){
+                client.register(username(i) , PASSWORD);
+                tokens[i] = client.login(username(i) , PASSWORD);
+            }
+
+            LoadDriver driver = new LoadDriver(CLIENTS , Duration.ofSeconds(10) , Duration.ofSeconds(30));
+
+            return driver.run((user , iteration) -> {
+                if(iteration % 10 == 0){
+                    return client.login(username(user) , PASSWORD) != null;
+                }
+                return client.profile(tokens[user]) == 200;
+            });
+        }
+    }
+
+    private static String username(int index){
+        return "bench" + index;
+    }
+}
@@ -0,0 +1,72 @@
+package com.marin.UserService.load;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+/**
+ * Minimal HTTP client of the API used by the load tests.
+ *
+ * Every method returns the status code of the response so the load driver can count the errors without parsing bodies.
+ */
+public class UserServiceClient {
+
+    private final HttpClient client;
+
+    private final URI baseUri;
+
+    public UserServiceClient(URI baseUri){
+        this.baseUri = baseUri;
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    public int register(String username , String password) throws IOException, InterruptedException {
+        return send(post("/auth/register" , credentials(username , password))).statusCode();
+    }
+
+    /**
+     * Logs in the given user.
+     *
+     * @return JWT of the user or null if the login was rejected.
+     */
+    public String login(String username , String password) throws IOException, InterruptedException {
+        HttpResponse<String> response = send(post("/auth/login" , credentials(username , password)));
+
+        return response.statusCode() == 200 ? response.body() : null;
+    }
+
+    public int profile(String token) throws IOException, InterruptedException {
+        return send(get("/users/profile" , token)).statusCode();
+    }
+
+    public int list(String token , int limit) throws IOException, InterruptedException {
+        return send(get("/users?limit=" + limit , token)).statusCode();
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        return client.send(request , HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpRequest post(String path , String json){
+        return HttpRequest.newBuilder(baseUri.resolve(path))
+                .header("Content-Type" , "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    private HttpRequest get(String path , String token){
+        return HttpRequest.newBuilder(baseUri.resolve(path))
+                .header("Authorization" , "Bearer " + token)
+                .GET()
+                .build();
+    }
+
+    private static String credentials(String username , String password){
+        return "{\"username\":\"" + username + "\",\"password\":\"" + password + "\"}";
+    }
+}
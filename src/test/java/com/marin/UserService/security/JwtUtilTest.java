@@ -0,0 +1,117 @@
+package com.marin.UserService.security;
+
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Checks which tokens are accepted: RS256 tokens of the key store and, while enabled, the legacy HS256 tokens without key id.
+ */
+class JwtUtilTest {
+
+    private SigningKeyStore keyStore;
+
+    @BeforeEach
+    void setUp(){
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:jwt_util;MODE=MySQL;DB_CLOSE_DELAY=-1" , "sa" , ""));
+        jdbcTemplate.execute("DROP TABLE IF EXISTS jwt_signing_keys");
+        jdbcTemplate.execute("CREATE TABLE jwt_signing_keys (kid VARCHAR(36) NOT NULL, public_key VARBINARY(1024) NOT NULL, " +
+                "private_key VARBINARY(4096) NOT NULL, generation BIGINT NOT NULL, activates_at BIGINT NOT NULL, " +
+                "expires_at BIGINT NOT NULL, PRIMARY KEY(kid), UNIQUE(generation))");
+
+        keyStore = new SigningKeyStore(jdbcTemplate , SigningKeyStoreTest.SECRET , 24 , 15);
+        keyStore.rotate();
+    }
+
+    @Test
+    void signedTokensAreVerified(){
+        JwtUtil jwtUtil = jwtUtil(false);
+        AuthenticatedUser user = new AuthenticatedUser(7 , "alice" , "" , List.of(new SimpleGrantedAuthority("CLIENT")));
+
+        VerifiedToken token = jwtUtil.verifyToken(jwtUtil.generateToken(user , 3));
+
+        assertEquals("alice" , token.subject());
+        assertEquals(7 , token.id());
+        assertEquals(3 , token.epoch());
+        assertEquals(List.of("CLIENT") , token.roles());
+    }
+
+    @Test
+    void legacyTokensAreAcceptedWhileEnabled(){
+        VerifiedToken token = jwtUtil(true).verifyToken(legacyToken(null));
+
+        assertEquals("alice" , token.subject());
+        assertEquals(7 , token.id());
+    }
+
+    @Test
+    void legacyTokensAreRejectedWhenDisabled(){
+        assertThrows(JwtException.class , () -> jwtUtil(false).verifyToken(legacyToken(null)));
+    }
+
+    @Test
+    void legacyTokensCantClaimAKeyId(){
+        String kid = keyStore.signingKey().kid();
+
+        assertThrows(JwtException.class , () -> jwtUtil(true).verifyToken(legacyToken(kid)));
+    }
+
+    @Test
+    void tokensOfUnknownKeysAreRejected() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+
+        String token = Jwts.builder()
+                .header().keyId(UUID.randomUUID().toString()).and()
+                .subject("alice")
+                .claim("id" , 7)
+                .expiration(new Date(System.currentTimeMillis() + 60000))
+                .signWith(keyPair.getPrivate() , Jwts.SIG.RS256)
+                .compact();
+
+        assertThrows(JwtException.class , () -> jwtUtil(true).verifyToken(token));
+    }
+
+    private JwtUtil jwtUtil(boolean acceptLegacyTokens){
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        return new JwtUtil(SigningKeyStoreTest.SECRET , acceptLegacyTokens , keyStore , new VerifiedTokenCache(100 , 1048576 , meterRegistry) , meterRegistry);
+    }
+
+    /**
+     * Builds a token signed with the secret as the tokens issued before moving to RS256.
+     */
+    private static String legacyToken(String kid){
+        JwtBuilder builder = Jwts.builder();
+
+        if(kid != null){
+            builder.header().keyId(kid);
+        }
+
+        return builder
+                .subject("alice")
+                .claim("id" , 7)
+                .claim("epoch" , 0)
+                .claim("roles" , List.of("CLIENT"))
+                .expiration(new Date(System.currentTimeMillis() + 60000))
+                .signWith(Keys.hmacShaKeyFor(SigningKeyStoreTest.SECRET.getBytes()) , Jwts.SIG.HS256)
+                .compact();
+    }
+}
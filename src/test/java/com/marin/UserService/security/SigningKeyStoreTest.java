@@ -0,0 +1,190 @@
+package com.marin.UserService.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.math.BigInteger;
+import java.security.interfaces.RSAPublicKey;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Checks the rotation schedule of the signing keys against an embedded database, every store plays the role of an
+ * instance of the API. The stores read the time from a clock of the test so the rotations can be moved forward.
+ */
+class SigningKeyStoreTest {
+
+    static final String SECRET = "test-secret-key-that-is-long-enough-for-hs256";
+
+    private static final long HOUR_MILLIS = 3600000;
+
+    private static final long MINUTE_MILLIS = 60000;
+
+    private static final long START = 1000 * HOUR_MILLIS;
+
+    private final AtomicLong now = new AtomicLong(START);
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp(){
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:signing_keys;MODE=MySQL;DB_CLOSE_DELAY=-1" , "sa" , ""));
+        jdbcTemplate.execute("DROP TABLE IF EXISTS jwt_signing_keys");
+        jdbcTemplate.execute("CREATE TABLE jwt_signing_keys (kid VARCHAR(36) NOT NULL, public_key VARBINARY(1024) NOT NULL, " +
+                "private_key VARBINARY(4096) NOT NULL, generation BIGINT NOT NULL, activates_at BIGINT NOT NULL, " +
+                "expires_at BIGINT NOT NULL, PRIMARY KEY(kid), UNIQUE(generation))");
+    }
+
+    @Test
+    void firstRotationCreatesAnActiveKey(){
+        SigningKeyStore store = store();
+        store.rotate();
+
+        assertEquals(1 , count());
+        assertEquals(START , store.signingKey().activatesAt());
+        assertEquals(1 , keys(store).size());
+    }
+
+    @Test
+    void nextKeyIsPublishedBeforeItSigns(){
+        SigningKeyStore store = store();
+        store.rotate();
+        String first = store.signingKey().kid();
+
+        now.set(START + 24 * HOUR_MILLIS - 16 * MINUTE_MILLIS);
+        store.rotate();
+        assertEquals(1 , count() , "The next key is only created within the overlap");
+
+        now.set(START + 24 * HOUR_MILLIS - 15 * MINUTE_MILLIS);
+        store.rotate();
+        assertEquals(2 , count());
+        assertEquals(2 , keys(store).size() , "The next key must be published as soon as it's created");
+        assertEquals(first , store.signingKey().kid() , "The next key must not sign before its activation");
+
+        now.set(START + 24 * HOUR_MILLIS);
+        String second = store.signingKey().kid();
+        assertNotEquals(first , second);
+        assertNotNull(store.publicKey(first) , "Tokens of the previous key must still be verifiable");
+    }
+
+    @Test
+    void expiredKeysAreRemoved(){
+        SigningKeyStore store = store();
+        store.rotate();
+        String first = store.signingKey().kid();
+
+        now.set(START + 24 * HOUR_MILLIS - 15 * MINUTE_MILLIS);
+        store.rotate();
+
+        // The first key signs until the second one activates and its tokens live one more day.
+        now.set(START + 48 * HOUR_MILLIS + 15 * MINUTE_MILLIS);
+        store.rotate();
+        assertNotNull(store.publicKey(first) , "The first key is removed only once it expires");
+
+        now.addAndGet(1);
+        store.rotate();
+        assertNull(store.publicKey(first));
+        assertFalse(keys(store).stream().anyMatch(key -> first.equals(key.get("kid"))));
+        assertEquals(2 , count());
+    }
+
+    @Test
+    void concurrentInstancesCreateEachKeyOnce() throws Exception {
+        List<SigningKeyStore> instances = List.of(store() , store() , store() , store());
+        ExecutorService executor = Executors.newFixedThreadPool(instances.size());
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+
+        try{
+            for(SigningKeyStore instance : instances){
+                results.add(executor.submit(() -> {
+                    start.await();
+                    instance.rotate();
+                    return null;
+                }));
+            }
+
+            start.countDown();
+
+            for(Future<?> result : results){
+                result.get();
+            }
+        }finally{
+            executor.shutdownNow();
+        }
+
+        assertEquals(1 , count());
+
+        for(SigningKeyStore instance : instances){
+            assertEquals(instances.get(0).signingKey().kid() , instance.signingKey().kid());
+        }
+
+        now.set(START + 24 * HOUR_MILLIS);
+
+        for(SigningKeyStore instance : instances){
+            instance.rotate();
+        }
+
+        assertEquals(2 , count());
+    }
+
+    @Test
+    void jwksEncodesModulusAndExponent(){
+        SigningKeyStore store = store();
+        store.rotate();
+
+        Map<String , Object> jwk = keys(store).get(0);
+        String kid = (String) jwk.get("kid");
+        RSAPublicKey publicKey = (RSAPublicKey) store.publicKey(kid);
+        String n = (String) jwk.get("n");
+
+        assertEquals("RSA" , jwk.get("kty"));
+        assertEquals("RS256" , jwk.get("alg"));
+        assertEquals("AQAB" , jwk.get("e"));
+        assertFalse(n.contains("=") || n.contains("+") || n.contains("/") , "n must be unpadded base64url");
+
+        byte[] modulus = Base64.getUrlDecoder().decode(n);
+        assertEquals(256 , modulus.length , "A 2048 bits modulus without the sign byte");
+        assertEquals(publicKey.getModulus() , new BigInteger(1 , modulus));
+        assertEquals(publicKey.getPublicExponent() , new BigInteger(1 , Base64.getUrlDecoder().decode((String) jwk.get("e"))));
+    }
+
+    @Test
+    void keysEncryptedWithAnotherSecretAreIgnored(){
+        store().rotate();
+
+        SigningKeyStore other = new SigningKeyStore(jdbcTemplate , "another-secret-key-that-is-long-enough" , 24 , 15 , now::get);
+        other.rotate();
+
+        assertEquals(2 , count() , "The store creates its own key");
+        assertEquals(1 , keys(other).size());
+    }
+
+    SigningKeyStore store(){
+        return new SigningKeyStore(jdbcTemplate , SECRET , 24 , 15 , now::get);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String , Object>> keys(SigningKeyStore store){
+        return (List<Map<String , Object>>) store.jwks().get("keys");
+    }
+
+    private int count(){
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM jwt_signing_keys" , Integer.class);
+    }
+}
@@ -0,0 +1,189 @@
+package com.marin.UserService.security;
+
+import com.marin.UserService.service.UserDetailsCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the token epochs shared through an embedded database, every registry plays the role of an instance of the API.
+ */
+class TokenEpochRegistryTest {
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp(){
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:token_epochs;MODE=MySQL;DB_CLOSE_DELAY=-1" , "sa" , ""));
+        jdbcTemplate.execute("DROP TABLE IF EXISTS user_token_epochs");
+        jdbcTemplate.execute("CREATE TABLE user_token_epochs (user_id INT NOT NULL, epoch INT NOT NULL, updated_at BIGINT NOT NULL, PRIMARY KEY(user_id))");
+    }
+
+    @Test
+    void bumpRevokesTheTokensOfTheUser(){
+        TokenEpochRegistry registry = registry();
+
+        assertTrue(registry.isCurrent(token(1 , 0)));
+
+        registry.bump(1);
+
+        assertFalse(registry.isCurrent(token(1 , 0)));
+        assertTrue(registry.isCurrent(token(1 , 1)));
+        assertTrue(registry.isCurrent(token(2 , 0)) , "Other users keep their tokens");
+    }
+
+    @Test
+    void otherInstancesPickTheBumpOnRefresh(){
+        TokenEpochRegistry first = registry();
+        TokenEpochRegistry second = registry();
+
+        first.bump(1);
+        assertTrue(second.isCurrent(token(1 , 0)) , "The bump is only seen after the refresh");
+
+        second.refresh();
+        assertFalse(second.isCurrent(token(1 , 0)));
+    }
+
+    @Test
+    void newTokensUseTheEpochOfTheDatabase(){
+        TokenEpochRegistry first = registry();
+        TokenEpochRegistry second = registry();
+
+        first.bump(1);
+        first.bump(1);
+
+        assertEquals(2 , second.currentEpoch(1) , "A token issued before the refresh must survive it");
+        second.refresh();
+        assertTrue(second.isCurrent(token(1 , second.currentEpoch(1))));
+        assertEquals(0 , second.currentEpoch(2));
+    }
+
+    @Test
+    void epochsNeverGoBack(){
+        TokenEpochRegistry registry = registry();
+        registry.bump(1);
+        registry.bump(1);
+
+        jdbcTemplate.update("UPDATE user_token_epochs SET epoch = 1, updated_at = ? WHERE user_id = 1" , System.currentTimeMillis() + 1000);
+        registry.refresh();
+
+        assertFalse(registry.isCurrent(token(1 , 1)));
+        assertEquals(2 , registry.currentEpoch(1));
+    }
+
+    @Test
+    void restartedInstancesLoadEveryEpoch(){
+        TokenEpochRegistry first = registry();
+        first.bump(1);
+        first.bump(2);
+
+        TokenEpochRegistry restarted = registry();
+
+        assertFalse(restarted.isCurrent(token(1 , 0)));
+        assertFalse(restarted.isCurrent(token(2 , 0)));
+    }
+
+    @Test
+    void concurrentBumpsAreNotLost() throws Exception {
+        List<TokenEpochRegistry> instances = List.of(registry() , registry());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> results = new ArrayList<>();
+
+        try{
+            for(int thread = 0; thread < 4; thread++){
+                TokenEpochRegistry instance = instances.get(thread % instances.size());
+
+                results.add(executor.submit(() -> {
+                    for(int i = 0; i < 25; i++){
+                        instance.bump(1);
+                    }
+                }));
+            }
+
+            for(Future<?> result : results){
+                result.get();
+            }
+        }finally{
+            executor.shutdownNow();
+        }
+
+        for(TokenEpochRegistry instance : instances){
+            instance.refresh();
+            assertEquals(100 , instance.currentEpoch(1));
+            assertFalse(instance.isCurrent(token(1 , 99)));
+        }
+    }
+
+    @Test
+    void deletedUsersKeepTheirEpoch(){
+        TokenEpochRegistry first = registry();
+        TokenEpochRegistry second = registry();
+
+        first.bump(1);
+        first.markDeleted(1);
+        second.bump(1);
+
+        assertEquals(TokenEpochRegistry.DELETED_EPOCH , second.currentEpoch(1));
+        assertEquals(TokenEpochRegistry.DELETED_EPOCH , first.currentEpoch(1));
+        assertFalse(second.isCurrent(token(1 , 1)));
+
+        first.markDeleted(2);
+        assertEquals(TokenEpochRegistry.DELETED_EPOCH , second.currentEpoch(2) , "Users never bumped are marked too");
+    }
+
+    @Test
+    void epochChangesEvictTheCachedUser(){
+        UserDetailsCache cache = new UserDetailsCache(100 , 300 , new SimpleMeterRegistry());
+        TokenEpochRegistry first = registry();
+        TokenEpochRegistry second = new TokenEpochRegistry(jdbcTemplate , cache);
+        second.afterSingletonsInstantiated();
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get("user1" , username -> user(1 , username , loads));
+        cache.get("user2" , username -> user(2 , username , loads));
+        first.markDeleted(1);
+
+        cache.get("user1" , username -> user(1 , username , loads));
+        assertEquals(2 , loads.get() , "The other instance keeps its cache until it refreshes");
+
+        second.refresh();
+        cache.get("user1" , username -> user(1 , username , loads));
+        cache.get("user2" , username -> user(2 , username , loads));
+        assertEquals(3 , loads.get() , "Only the user whose epoch changed is evicted");
+
+        second.refresh();
+        cache.get("user1" , username -> user(1 , username , loads));
+        assertEquals(3 , loads.get() , "Rows already merged don't evict the user again");
+    }
+
+    private static AuthenticatedUser user(int id , String username , AtomicInteger loads){
+        loads.incrementAndGet();
+
+        return new AuthenticatedUser(id , username , "hash" , List.of());
+    }
+
+    private TokenEpochRegistry registry(){
+        TokenEpochRegistry registry = new TokenEpochRegistry(jdbcTemplate , new UserDetailsCache(100 , 300 , new SimpleMeterRegistry()));
+        registry.afterSingletonsInstantiated();
+
+        return registry;
+    }
+
+    private static VerifiedToken token(int userId , int epoch){
+        return new VerifiedToken("user" + userId , userId , List.of("CLIENT") , epoch , Instant.now().plusSeconds(60));
+    }
+}
@@ -0,0 +1,58 @@
+package com.marin.UserService.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the answers of the Bloom filter below and above the number of elements it's sized for.
+ */
+class BloomFilterTest {
+
+    @Test
+    void addedElementsAreAlwaysFound(){
+        BloomFilter filter = new BloomFilter(10_000 , 0.01);
+
+        for(int i = 0; i < 10_000; i++){
+            filter.add("user" + i);
+        }
+
+        for(int i = 0; i < 10_000; i++){
+            assertTrue(filter.mightContain("user" + i) , "user" + i + " was added");
+        }
+    }
+
+    @Test
+    void falsePositivesStayCloseToTheConfiguredProbability(){
+        BloomFilter filter = new BloomFilter(10_000 , 0.01);
+
+        for(int i = 0; i < 10_000; i++){
+            filter.add("user" + i);
+        }
+
+        int falsePositives = 0;
+
+        for(int i = 0; i < 10_000; i++){
+            if(filter.mightContain("other" + i)){
+                falsePositives++;
+            }
+        }
+
+        assertTrue(falsePositives < 200 , falsePositives + " false positives of 10000");
+    }
+
+    @Test
+    void saturatedFilterStillFindsEveryElement(){
+        BloomFilter filter = new BloomFilter(100 , 0.01);
+
+        for(int i = 0; i < 10_000; i++){
+            filter.add("user" + i);
+        }
+
+        for(int i = 0; i < 10_000; i++){
+            assertTrue(filter.mightContain("user" + i) , "user" + i + " was added");
+        }
+
+        assertTrue(filter.mightContain("never-added") , "A saturated filter might contain anything");
+    }
+}
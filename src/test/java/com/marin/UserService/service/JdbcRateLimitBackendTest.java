@@ -0,0 +1,174 @@
+package com.marin.UserService.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the shared rate limit store against an embedded database, every backend plays the role of an instance of the API.
+ * The instances read the time from a clock of the test so the windows can be moved forward.
+ */
+class JdbcRateLimitBackendTest {
+
+    private static final long PERIOD_MILLIS = RateLimit.CLIENT.getPeriod().toMillis();
+
+    private final AtomicLong now = new AtomicLong(100 * PERIOD_MILLIS);
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp(){
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:rate_limit;MODE=MySQL;DB_CLOSE_DELAY=-1" , "sa" , ""));
+        jdbcTemplate.execute("DROP TABLE IF EXISTS rate_limit_buckets");
+        jdbcTemplate.execute("CREATE TABLE rate_limit_buckets (bucket_key VARCHAR(64) NOT NULL, window_start BIGINT NOT NULL, consumed BIGINT NOT NULL, PRIMARY KEY(bucket_key))");
+    }
+
+    @Test
+    void concurrentInstancesShareTheLimit() throws Exception {
+        List<JdbcRateLimitBackend> instances = List.of(backend(10) , backend(10));
+        BucketKey key = BucketKey.ofUser(EndpointGroup.USERS , RateLimit.ADMIN , 1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Integer>> results = new ArrayList<>();
+
+        try{
+            for(int thread = 0; thread < 8; thread++){
+                JdbcRateLimitBackend instance = instances.get(thread % instances.size());
+
+                results.add(executor.submit(() -> {
+                    int accepted = 0;
+
+                    for(int i = 0; i < 50; i++){
+                        if(instance.tryConsume(key).consumed()){
+                            accepted++;
+                        }
+                    }
+
+                    return accepted;
+                }));
+            }
+
+            int accepted = 0;
+
+            for(Future<Integer> result : results){
+                accepted += result.get();
+            }
+
+            long consumed = jdbcTemplate.queryForObject("SELECT consumed FROM rate_limit_buckets" , Long.class);
+
+            assertTrue(accepted > 0 && accepted <= RateLimit.ADMIN.getCapacity() , accepted + " requests accepted");
+            assertEquals(consumed , accepted , "Every leased token must be used once");
+        }finally{
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void leasesOfOtherInstancesCountAgainstTheLimit(){
+        JdbcRateLimitBackend first = backend(67);
+        JdbcRateLimitBackend second = backend(67);
+        BucketKey key = BucketKey.ofAddress(EndpointGroup.AUTH , "10.0.0.1");
+
+        assertTrue(first.tryConsume(key).consumed());
+        assertTrue(second.tryConsume(key).consumed());
+        assertFalse(second.tryConsume(key).consumed());
+        assertTrue(first.tryConsume(key).consumed());
+        assertFalse(first.tryConsume(key).consumed());
+    }
+
+    @Test
+    void leasesTakeAShareOfTheCapacity(){
+        BucketKey admin = BucketKey.ofUser(EndpointGroup.USERS , RateLimit.ADMIN , 1);
+        BucketKey client = BucketKey.ofAddress(EndpointGroup.AUTH , "10.0.0.1");
+        JdbcRateLimitBackend backend = backend(10);
+
+        for(int i = 0; i < 12; i++){
+            assertTrue(backend.tryConsume(admin).consumed());
+        }
+
+        backend.tryConsume(client);
+
+        assertEquals(12 , consumed(admin) , "12 requests of an admin need a single lease");
+        assertEquals(1 , consumed(client) , "Small limits lease one token at a time");
+    }
+
+    @Test
+    void remainingCountsTheSharedWindow(){
+        JdbcRateLimitBackend first = backend(67);
+        JdbcRateLimitBackend second = backend(67);
+        BucketKey key = BucketKey.ofAddress(EndpointGroup.AUTH , "10.0.0.1");
+
+        assertEquals(2 , first.tryConsume(key).remainingTokens() , "1 token of the lease and 1 left in the database");
+        assertEquals(0 , second.tryConsume(key).remainingTokens() , "The lease of the first instance isn't available");
+    }
+
+    @Test
+    void exhaustedClientIsAcceptedAgainInTheNextWindow(){
+        JdbcRateLimitBackend backend = backend(67);
+        BucketKey key = BucketKey.ofAddress(EndpointGroup.AUTH , "10.0.0.1");
+
+        for(int i = 0; i < RateLimit.CLIENT.getCapacity(); i++){
+            assertTrue(backend.tryConsume(key).consumed());
+        }
+
+        now.addAndGet(PERIOD_MILLIS / 2);
+        RateLimitProbe rejected = backend.tryConsume(key);
+
+        assertFalse(rejected.consumed());
+        assertEquals(PERIOD_MILLIS / 2 * 1_000_000 , rejected.nanosToWaitForRefill());
+
+        now.addAndGet(PERIOD_MILLIS / 2);
+
+        assertTrue(backend.tryConsume(key).consumed());
+        assertEquals(now.get() , jdbcTemplate.queryForObject("SELECT window_start FROM rate_limit_buckets" , Long.class));
+    }
+
+    @Test
+    void clientIsRejectedWhenAnotherInstanceIsAlreadyInALaterWindow(){
+        BucketKey key = BucketKey.ofAddress(EndpointGroup.AUTH , "10.0.0.1");
+
+        backend(67).tryConsume(key);
+        now.addAndGet(PERIOD_MILLIS);
+        backend(67).tryConsume(key);
+        now.addAndGet(-PERIOD_MILLIS);
+
+        assertFalse(backend(67).tryConsume(key).consumed());
+    }
+
+    @Test
+    void cleanupRemovesOnlyTheCountersOfPastWindows(){
+        JdbcRateLimitBackend backend = backend(67);
+
+        backend.tryConsume(BucketKey.ofAddress(EndpointGroup.AUTH , "10.0.0.1"));
+        now.addAndGet(20 * PERIOD_MILLIS);
+        backend.tryConsume(BucketKey.ofAddress(EndpointGroup.AUTH , "10.0.0.2"));
+
+        backend.removeExpiredCounters();
+
+        assertEquals(1 , jdbcTemplate.queryForObject("SELECT COUNT(*) FROM rate_limit_buckets" , Integer.class));
+    }
+
+    private long consumed(BucketKey key){
+        return jdbcTemplate.queryForObject("SELECT consumed FROM rate_limit_buckets WHERE bucket_key LIKE ?" , Long.class ,
+                key.group().name() + ":" + key.limit().name() + ":%");
+    }
+
+    /**
+     * Creates an instance whose leases take the given percent of the capacity, 67% leases 2 of the 3 tokens of a CLIENT.
+     */
+    private JdbcRateLimitBackend backend(long batchPercent){
+        return new JdbcRateLimitBackend(jdbcTemplate , batchPercent , 1000 , new SimpleMeterRegistry() , now::get);
+    }
+}
@@ -0,0 +1,68 @@
+package com.marin.UserService.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the buckets kept in memory.
+ */
+class LocalRateLimitBackendTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final LocalRateLimitBackend backend = new LocalRateLimitBackend(1000 , 300 , meterRegistry);
+
+    @Test
+    void usersGetTheLimitOfTheirCurrentTier(){
+        BucketKey asUser = BucketKey.ofUser(EndpointGroup.USERS , RateLimit.USER , 1);
+
+        for(int i = 0; i < RateLimit.USER.getCapacity(); i++){
+            assertTrue(backend.tryConsume(asUser).consumed());
+        }
+
+        assertFalse(backend.tryConsume(asUser).consumed());
+
+        // The user is promoted to admin, its next requests are limited by the admin tier.
+        RateLimitProbe asAdmin = backend.tryConsume(BucketKey.ofUser(EndpointGroup.USERS , RateLimit.ADMIN , 1));
+
+        assertTrue(asAdmin.consumed());
+        assertEquals(RateLimit.ADMIN.getCapacity() - 1 , asAdmin.remainingTokens());
+    }
+
+    @Test
+    void bucketBytesFollowTheLiveBuckets(){
+        assertEquals(0 , gauge("ratelimit.buckets.memory"));
+        assertEquals(0 , gauge("ratelimit.bucket.size"));
+
+        backend.tryConsume(BucketKey.ofAddress(EndpointGroup.AUTH , "10.0.0.1"));
+        double bytesPerBucket = gauge("ratelimit.bucket.size");
+
+        assertTrue(bytesPerBucket > 32 && bytesPerBucket < 4096 , bytesPerBucket + " bytes per bucket");
+        assertEquals(bytesPerBucket , gauge("ratelimit.buckets.memory"));
+
+        backend.tryConsume(BucketKey.ofAddress(EndpointGroup.AUTH , "10.0.0.2"));
+        backend.tryConsume(BucketKey.ofAddress(EndpointGroup.AUTH , "10.0.0.2"));
+
+        assertEquals(2 * bytesPerBucket , gauge("ratelimit.buckets.memory") , "Only new buckets add bytes");
+    }
+
+    private double gauge(String name){
+        return meterRegistry.get(name).gauge().value();
+    }
+
+    @Test
+    void groupsHaveTheirOwnBuckets(){
+        BucketKey auth = BucketKey.ofAddress(EndpointGroup.AUTH , "10.0.0.1");
+
+        for(int i = 0; i < RateLimit.CLIENT.getCapacity(); i++){
+            assertTrue(backend.tryConsume(auth).consumed());
+        }
+
+        assertFalse(backend.tryConsume(auth).consumed());
+        assertTrue(backend.tryConsume(BucketKey.ofAddress(EndpointGroup.USERS , "10.0.0.1")).consumed());
+    }
+}
@@ -0,0 +1,148 @@
+package com.marin.UserService.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Checks the formats of the export of users against an embedded database and that the query is cancelled when the
+ * client goes away. The statements of the export are spied to know whether they were cancelled.
+ */
+class UserExportServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private JdbcTemplate jdbcTemplate;
+
+    private UserExportService exportService;
+
+    private PreparedStatement lastStatement;
+
+    @BeforeEach
+    void setUp(){
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:user_export;MODE=MySQL;DB_CLOSE_DELAY=-1" , "sa" , ""){
+            @Override
+            public Connection getConnection() throws SQLException {
+                Connection connection = spy(super.getConnection());
+
+                doAnswer(invocation -> {
+                    lastStatement = spy((PreparedStatement) invocation.callRealMethod());
+                    return lastStatement;
+                }).when(connection).prepareStatement(anyString() , anyInt() , anyInt());
+
+                return connection;
+            }
+        };
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("DROP TABLE IF EXISTS user_roles");
+        jdbcTemplate.execute("DROP TABLE IF EXISTS users");
+        jdbcTemplate.execute("DROP TABLE IF EXISTS roles");
+        jdbcTemplate.execute("CREATE TABLE users (id INT AUTO_INCREMENT PRIMARY KEY, username VARCHAR(255) NOT NULL, password VARCHAR(255) NOT NULL)");
+        jdbcTemplate.execute("CREATE TABLE roles (id INT AUTO_INCREMENT PRIMARY KEY, name VARCHAR(255) NOT NULL)");
+        jdbcTemplate.execute("CREATE TABLE user_roles (user_id INT NOT NULL, role_id INT NOT NULL)");
+        jdbcTemplate.update("INSERT INTO roles (id, name) VALUES (1, 'CLIENT'), (2, 'ADMIN')");
+
+        exportService = new UserExportService(jdbcTemplate , new DataSourceTransactionManager(dataSource) , objectMapper , 100);
+    }
+
+    @Test
+    void csvEscapesTheUsernames() throws Exception {
+        insertUser(1 , "comma,name" , 1);
+        insertUser(2 , "say \"hi\"" , 2);
+        insertUser(3 , "two\nlines" , null);
+
+        String csv = export(UserExportService.Format.CSV);
+
+        assertEquals("id,username,roles\n" +
+                "1,\"comma,name\",CLIENT\n" +
+                "2,\"say \"\"hi\"\"\",ADMIN\n" +
+                "3,\"two\nlines\",\n" , csv);
+    }
+
+    @Test
+    void ndjsonWritesAUserPerLine() throws Exception {
+        insertUser(1 , "jhon" , 1);
+        jdbcTemplate.update("INSERT INTO user_roles (user_id, role_id) VALUES (1, 2)");
+        insertUser(2 , "two\nlines" , null);
+
+        String ndjson = export(UserExportService.Format.NDJSON);
+        String[] lines = ndjson.split("\n");
+
+        assertEquals(2 , lines.length , "Line breaks of the usernames must be escaped");
+        assertEquals('\n' , ndjson.charAt(ndjson.length() - 1));
+
+        Map<?, ?> first = objectMapper.readValue(lines[0] , Map.class);
+        assertEquals(1 , first.get("id"));
+        assertEquals("jhon" , first.get("username"));
+        assertEquals(2 , ((List<?>) first.get("roles")).size());
+
+        assertEquals(Map.of("id" , 2 , "username" , "two\nlines" , "roles" , List.of()) , objectMapper.readValue(lines[1] , Map.class));
+    }
+
+    @Test
+    void emptyExportIsEmpty() throws Exception {
+        assertEquals("" , export(UserExportService.Format.NDJSON));
+    }
+
+    @Test
+    void queryIsCancelledWhenTheClientGoesAway() throws Exception {
+        jdbcTemplate.update("INSERT INTO users (id, username, password) SELECT X, CONCAT('user', X), 'hash' FROM SYSTEM_RANGE(1, 5000)");
+
+        OutputStream disconnected = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+
+            @Override
+            public void write(byte[] b , int off , int len) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        IOException ex = assertThrows(IOException.class , () -> exportService.exportUsers(UserExportService.Format.NDJSON , disconnected));
+
+        assertEquals("Broken pipe" , ex.getMessage());
+        assertNotNull(lastStatement);
+        verify(lastStatement).cancel();
+    }
+
+    private void insertUser(int id , String username , Integer roleId){
+        jdbcTemplate.update("INSERT INTO users (id, username, password) VALUES (?, ?, 'hash')" , id , username);
+
+        if(roleId != null){
+            jdbcTemplate.update("INSERT INTO user_roles (user_id, role_id) VALUES (?, ?)" , id , roleId);
+        }
+    }
+
+    private String export(UserExportService.Format format) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        exportService.exportUsers(format , output);
+
+        return output.toString(StandardCharsets.UTF_8);
+    }
+}
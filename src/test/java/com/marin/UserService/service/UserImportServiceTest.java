@@ -0,0 +1,85 @@
+package com.marin.UserService.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.marin.UserService.dto.ImportResultDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks the bulk import of users against the embedded database: the result of every line and the rows it inserts.
+ */
+@SpringBootTest(properties = "rate-limit.enabled=false")
+class UserImportServiceTest {
+
+    @Autowired
+    private UserImportService userImportService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void everyLineGetsItsResult() throws Exception {
+        List<ImportResultDTO> results = importUsers(
+                "{\"username\":\"import-ana\",\"password\":\"password\"}",
+                "{\"username\":\"IMPORT-ANA\",\"password\":\"password\"}",
+                "{\"username\":\"admin\",\"password\":\"password\"}",
+                "{\"username\":\"import-broken\",",
+                "",
+                "{\"username\":\"import-short\",\"password\":\"abc\"}",
+                "null",
+                "{\"username\":\"import-eli\",\"password\":\"password\"}");
+
+        assertEquals(List.of(
+                new ImportResultDTO(1 , "import-ana" , ImportResultDTO.Status.CREATED , null),
+                new ImportResultDTO(2 , "IMPORT-ANA" , ImportResultDTO.Status.DUPLICATE , "This username has already been taken"),
+                new ImportResultDTO(3 , "admin" , ImportResultDTO.Status.DUPLICATE , "This username has already been taken"),
+                new ImportResultDTO(4 , null , ImportResultDTO.Status.INVALID , "Malformed JSON"),
+                new ImportResultDTO(6 , "import-short" , ImportResultDTO.Status.INVALID , "password: Password must have at least 4 characters"),
+                new ImportResultDTO(7 , null , ImportResultDTO.Status.INVALID , "Missing user"),
+                new ImportResultDTO(8 , "import-eli" , ImportResultDTO.Status.CREATED , null)
+        ) , results);
+
+        assertEquals(0 , jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users WHERE username IN ('import-broken', 'import-short')" , Integer.class));
+    }
+
+    @Test
+    void importedUsersGetTheClientRole() throws Exception {
+        importUsers(
+                "{\"username\":\"import-jhon\",\"password\":\"password\"}",
+                "{\"username\":\"import-mia\",\"password\":\"password\"}",
+                "{\"username\":\"import-leo\",\"password\":\"password\"}");
+
+        List<Map<String , Object>> roles = jdbcTemplate.queryForList("SELECT u.username, r.name FROM users u " +
+                "JOIN user_roles ur ON ur.user_id = u.id JOIN roles r ON r.id = ur.role_id " +
+                "WHERE u.username IN ('import-jhon', 'import-mia', 'import-leo') ORDER BY u.id");
+
+        assertEquals(List.of(
+                Map.of("username" , "import-jhon" , "name" , "CLIENT"),
+                Map.of("username" , "import-mia" , "name" , "CLIENT"),
+                Map.of("username" , "import-leo" , "name" , "CLIENT")
+        ) , roles , "Every generated id must get its own role");
+    }
+
+    private List<ImportResultDTO> importUsers(String... lines) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        userImportService.importUsers(new ByteArrayInputStream(String.join("\n" , lines).getBytes(StandardCharsets.UTF_8)) , output);
+
+        return objectMapper.readerFor(ImportResultDTO.class)
+                .<ImportResultDTO>readValues(output.toByteArray())
+                .readAll();
+    }
+}
@@ -0,0 +1,92 @@
+package com.marin.UserService.service;
+
+import com.marin.UserService.dto.UserDataDTO;
+import com.marin.UserService.dto.UserPageDTO;
+import com.marin.UserService.exception.InvalidCursorException;
+import com.marin.UserService.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks the keyset pagination of the users: the cursors, the size of the pages and the last page.
+ */
+@ExtendWith(MockitoExtension.class)
+class UserServiceImpTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @InjectMocks
+    private UserServiceImp userService;
+
+    @Test
+    void cursorPointsAfterTheLastUserOfThePage() throws Exception {
+        when(userRepository.findDataPage(0 , PageRequest.of(0 , 3))).thenReturn(users(1 , 3));
+        when(userRepository.findDataPage(2 , PageRequest.of(0 , 3))).thenReturn(users(3 , 1));
+
+        UserPageDTO first = userService.fetchUsersPage(null , 2);
+
+        assertEquals(users(1 , 2) , first.users());
+        assertEquals("Mg" , first.nextCursor() , "The cursor is the unpadded base64url of the last id");
+
+        UserPageDTO last = userService.fetchUsersPage(first.nextCursor() , 2);
+
+        assertEquals(users(3 , 1) , last.users());
+        assertNull(last.nextCursor() , "The last page has no cursor");
+    }
+
+    @Test
+    void fullLastPageHasNoCursor() throws Exception {
+        when(userRepository.findDataPage(0 , PageRequest.of(0 , 3))).thenReturn(users(1 , 2));
+
+        UserPageDTO page = userService.fetchUsersPage("" , 2);
+
+        assertEquals(2 , page.users().size());
+        assertNull(page.nextCursor());
+    }
+
+    @Test
+    void pageSizeIsClamped() throws Exception {
+        when(userRepository.findDataPage(anyInt() , any())).thenReturn(List.of());
+
+        userService.fetchUsersPage(null , 100000);
+        verify(userRepository).findDataPage(0 , PageRequest.of(0 , 501));
+
+        userService.fetchUsersPage(null , 0);
+        verify(userRepository).findDataPage(0 , PageRequest.of(0 , 2));
+    }
+
+    @Test
+    void cursorsNotIssuedByTheApiAreRejected(){
+        String notANumber = Base64.getUrlEncoder().encodeToString("users".getBytes(StandardCharsets.US_ASCII));
+
+        assertThrows(InvalidCursorException.class , () -> userService.fetchUsersPage("not base64!" , 10));
+        assertThrows(InvalidCursorException.class , () -> userService.fetchUsersPage(notANumber , 10));
+        verify(userRepository , never()).findDataPage(anyInt() , eq(PageRequest.of(0 , 11)));
+    }
+
+    private static List<UserDataDTO> users(int firstId , int count){
+        return IntStream.range(firstId , firstId + count)
+                .mapToObj(id -> new UserDataDTO(id , "user" + id))
+                .toList();
+    }
+}
@@ -0,0 +1,82 @@
+package com.marin.UserService.service;
+
+import com.marin.UserService.datasource.ReadYourWritesTracker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Checks the versions shared through an embedded database, every UserVersions plays the role of an instance of the API.
+ */
+class UserVersionsTest {
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp(){
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:user_versions;MODE=MySQL;DB_CLOSE_DELAY=-1" , "sa" , ""));
+        jdbcTemplate.execute("DROP TABLE IF EXISTS user_version_buckets");
+        jdbcTemplate.execute("CREATE TABLE user_version_buckets (bucket INT NOT NULL, version BIGINT NOT NULL, updated_at BIGINT NOT NULL, PRIMARY KEY(bucket))");
+    }
+
+    @Test
+    void changesUpdateTheTagsOfTheUserAndTheListings(){
+        UserVersions versions = versions("");
+        String userTag = versions.userTag("Jhon");
+        String listTag = versions.listTag();
+
+        versions.userChanged("jhon");
+
+        assertNotEquals(userTag , versions.userTag("Jhon"));
+        assertNotEquals(listTag , versions.listTag());
+    }
+
+    @Test
+    void everyInstanceIssuesTheSameTags(){
+        UserVersions first = versions("");
+        UserVersions second = versions("");
+
+        first.usersChanged(List.of("Jhon" , "Eli" , "Ana"));
+
+        assertNotEquals(first.listTag() , second.listTag());
+
+        second.refresh();
+
+        assertEquals(first.userTag("Jhon") , second.userTag("Jhon"));
+        assertEquals(first.listTag() , second.listTag());
+        assertEquals(first.listTag() , versions("").listTag() , "A restarted instance must issue the same tags");
+    }
+
+    @Test
+    void listTagCountsEveryChange(){
+        UserVersions versions = versions("");
+
+        versions.usersChanged(List.of("Jhon" , "Jhon" , "Eli"));
+
+        assertEquals("\"l3\"" , versions.listTag());
+    }
+
+    @Test
+    void noTagIsIssuedWhileReplicasMayLag(){
+        UserVersions versions = versions("jdbc:h2:mem:replica");
+
+        versions.userChanged("Jhon");
+
+        assertNull(versions.userTag("Jhon"));
+        assertNull(versions.listTag());
+    }
+
+    private UserVersions versions(String replicaUrls){
+        UserVersions versions = new UserVersions(jdbcTemplate , new ReadYourWritesTracker(replicaUrls , 60000));
+        versions.afterSingletonsInstantiated();
+
+        return versions;
+    }
+}
@@ -0,0 +1,145 @@
+package com.marin.UserService.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks how the username filter follows the users table of an embedded database.
+ * The filters are sized with a tiny false positive probability so unknown usernames are reliably rejected.
+ */
+class UsernameFilterTest {
+
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Runs once after the next page of a rebuild is read, as a registration racing with the rebuild.
+     */
+    private Runnable afterRebuildPage;
+
+    @BeforeEach
+    void setUp(){
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:username_filter;MODE=MySQL;DB_CLOSE_DELAY=-1" , "sa" , "")){
+            @Override
+            public void query(String sql , RowCallbackHandler handler , Object... args){
+                super.query(sql , handler , args);
+
+                if(sql.contains("ORDER BY id") && afterRebuildPage != null){
+                    Runnable registration = afterRebuildPage;
+                    afterRebuildPage = null;
+                    registration.run();
+                }
+            }
+        };
+        jdbcTemplate.execute("DROP TABLE IF EXISTS users");
+        jdbcTemplate.execute("CREATE TABLE users (id INT NOT NULL AUTO_INCREMENT, username VARCHAR(64) NOT NULL, PRIMARY KEY(id))");
+
+        register("Jhon");
+        register("Eli");
+    }
+
+    @Test
+    void rebuildLoadsTheRegisteredUsernamesIgnoringCase(){
+        UsernameFilter filter = filter(true);
+
+        assertTrue(filter.mightContain("jhon"));
+        assertTrue(filter.mightContain("ELI"));
+        assertFalse(filter.mightContain("Ana"));
+    }
+
+    @Test
+    void addedUsernamesAreFoundWithoutQuerying(){
+        UsernameFilter filter = filter(true);
+
+        filter.add("Ana");
+
+        assertTrue(filter.mightContain("ana"));
+    }
+
+    @Test
+    void mightExistCatchesUpUsersRegisteredByOtherInstances() throws InterruptedException {
+        UsernameFilter filter = filter(true);
+
+        register("Ana");
+        // The rebuild has just caught up, the next catch-up waits for the minimum interval.
+        Thread.sleep(150);
+
+        assertFalse(filter.mightContain("Ana"));
+        assertTrue(filter.mightExist("Ana"));
+        assertTrue(filter.mightContain("Ana"));
+    }
+
+    @Test
+    void deletedUsersDontHideTheOthersAndAreDroppedByTheRebuild(){
+        UsernameFilter filter = filter(true);
+
+        jdbcTemplate.update("DELETE FROM users WHERE username = ?" , "Eli");
+
+        assertTrue(filter.mightContain("Jhon"));
+        assertTrue(filter.mightContain("Eli"));
+
+        filter.rebuild();
+
+        assertTrue(filter.mightContain("Jhon"));
+        assertFalse(filter.mightContain("Eli"));
+    }
+
+    @Test
+    void rebuildCatchesUpUsersRegisteredDuringTheScan(){
+        UsernameFilter filter = filter(true);
+
+        // A rejected login has just caught up, the rebuild must catch up anyway.
+        assertFalse(filter.mightExist("Nobody"));
+        afterRebuildPage = () -> register("Ana");
+        filter.rebuild();
+
+        assertTrue(filter.mightContain("Ana"));
+    }
+
+    @Test
+    void usernamesAddedDuringARebuildAreKept(){
+        UsernameFilter filter = filter(true);
+
+        afterRebuildPage = () -> filter.add("Zoe");
+        filter.rebuild();
+
+        assertTrue(filter.mightContain("Zoe"));
+    }
+
+    @Test
+    void rebuildReadsEveryPage(){
+        jdbcTemplate.update("INSERT INTO users (username) SELECT CONCAT('user' , X) FROM SYSTEM_RANGE(1 , 25000)");
+
+        UsernameFilter filter = new UsernameFilter(jdbcTemplate , true , 30000 , 1e-9 , new SimpleMeterRegistry());
+        filter.afterSingletonsInstantiated();
+
+        assertTrue(filter.mightContain("Jhon"));
+        assertTrue(filter.mightContain("user10000"));
+        assertTrue(filter.mightContain("user25000"));
+    }
+
+    @Test
+    void disabledFilterMightContainAnyUsername(){
+        UsernameFilter filter = filter(false);
+
+        assertTrue(filter.mightContain("Ana"));
+        assertTrue(filter.mightExist("Ana"));
+    }
+
+    private UsernameFilter filter(boolean enabled){
+        UsernameFilter filter = new UsernameFilter(jdbcTemplate , enabled , 1000 , 1e-9 , new SimpleMeterRegistry());
+        filter.afterSingletonsInstantiated();
+
+        return filter;
+    }
+
+    private void register(String username){
+        jdbcTemplate.update("INSERT INTO users (username) VALUES (?)" , username);
+    }
+}
@@ -0,0 +1,3 @@
+CREATE TABLE IF NOT EXISTS users (id INT NOT NULL, username VARCHAR(255) NOT NULL, password VARCHAR(255), PRIMARY KEY(id));
+CREATE TABLE IF NOT EXISTS roles (id INT NOT NULL, name VARCHAR(10) NOT NULL, PRIMARY KEY(id));
+CREATE TABLE IF NOT EXISTS user_roles (user_id INT NOT NULL, role_id INT NOT NULL);